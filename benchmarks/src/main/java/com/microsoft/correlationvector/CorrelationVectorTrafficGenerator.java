@@ -0,0 +1,594 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Generates synthetic correlation vector traffic, for load testing the
+ * pipelines and stores that ingest traces.
+ * <p/>
+ * The traffic is made of call trees. The root operation of a tree creates a
+ * vector and each operation calls up to a number of operations, incrementing
+ * its vector for each call, or spinning it first for a fraction of the calls.
+ * The called operation extends the value it received. A fraction of the trees
+ * are chains of calls extended until the vector is terminated for being
+ * oversized. Each thread writes the operations applied to the vectors of its
+ * trees to its own file, either as text lines of the time in milliseconds, the
+ * operation and the vector separated by tabs, or as record files readable with
+ * {@link CorrelationVectorRecordReader}.
+ * <p/>
+ * The bases, spin values and times are derived from the seed, so generating the
+ * same number of trees with the same configuration writes the same files.
+ * <p/>
+ * The generator is a load testing tool: it ships with the benchmarks rather
+ * than with the library, and shares the package of the library to write
+ * records in the format of {@link CorrelationVectorRecorder}.
+ */
+public final class CorrelationVectorTrafficGenerator {
+
+    /**
+     * Formats of the generated files.
+     */
+    public enum Format {
+        /**
+         * One operation per line, with ".txt" files.
+         */
+        Text,
+        /**
+         * The record format of {@link CorrelationVectorRecorder}, with ".cvr"
+         * files.
+         */
+        Binary;
+    }
+
+    static final String TEXT_FILE_SUFFIX = ".txt";
+
+    /**
+     * The time of the first operation of each thread, 2020-01-01T00:00:00Z.
+     */
+    private static final long START_MILLIS = 1577836800000L;
+    private static final long TICKS_PER_MILLISECOND = 10000;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_TEXT_LINE = 20 + 1 + 10 + 1 + CorrelationVectorRecorder.MAX_VALUE_LENGTH + 1;
+
+    private static final CorrelationVectorOperation[] OPERATIONS = CorrelationVectorOperation.values();
+    private static final byte[][] OPERATION_NAMES = new byte[OPERATIONS.length][];
+
+    static {
+        for (final CorrelationVectorOperation operation : OPERATIONS) {
+            OPERATION_NAMES[operation.ordinal()] = operation.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final long seed;
+    private final int threads;
+    private final Format format;
+    private final String filePrefix;
+    private final int depth;
+    private final int fanOut;
+    private final double spinFraction;
+    private final double chainFraction;
+    private final double v2Fraction;
+    private final CorrelationVectorMetrics metrics;
+
+    /**
+     * Creates a new builder initialized with the default configuration.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private CorrelationVectorTrafficGenerator(Builder builder) {
+        this.seed = builder.seed;
+        this.threads = builder.threads;
+        this.format = builder.format;
+        this.filePrefix = builder.filePrefix;
+        this.depth = builder.depth;
+        this.fanOut = builder.fanOut;
+        this.spinFraction = builder.spinFraction;
+        this.chainFraction = builder.chainFraction;
+        this.v2Fraction = builder.v2Fraction;
+        this.metrics = builder.metrics;
+    }
+
+    /**
+     * Generates the given number of call trees, split across the threads, into
+     * files of the given directory. Thread i writes the file named with the file
+     * prefix followed by "." and i, overwriting any existing file.
+     *
+     * @param directory
+     *            the directory of the files.
+     * @param trees
+     *            the number of call trees.
+     * @return the number of operations written.
+     * @throws IOException
+     *             if a file can not be written.
+     */
+    public long generate(Path directory, long trees) throws IOException {
+        if (trees < 0) {
+            throw new IllegalArgumentException("trees can not be negative");
+        }
+        Files.createDirectories(directory);
+
+        final Worker[] workers = new Worker[this.threads];
+        final Thread[] running = new Thread[this.threads];
+        final String suffix = this.format == Format.Text ? TEXT_FILE_SUFFIX : CorrelationVectorRecorder.FILE_SUFFIX;
+        for (int i = 0; i < this.threads; i++) {
+            workers[i] = new Worker(this, directory.resolve(this.filePrefix + "." + i + suffix),
+                    CorrelationSampler.mix(this.seed + (i + 1) * GOLDEN_GAMMA),
+                    trees * (i + 1) / this.threads - trees * i / this.threads);
+            running[i] = new Thread(workers[i], "cv-traffic-generator-" + i);
+            running[i].start();
+        }
+
+        long operations = 0;
+        IOException failure = null;
+        for (int i = 0; i < this.threads; i++) {
+            try {
+                running[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while generating traffic", e);
+            }
+            operations += workers[i].operations;
+            if (failure == null) {
+                failure = workers[i].failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return operations;
+    }
+
+    /**
+     * Generates the trees of one thread. The worker is the base generator,
+     * entropy source, tick source and metrics sink of its own factory, so every
+     * operation applied by the factory is written to the file of the worker. The
+     * metrics of the generator, if any, are notified after the worker.
+     */
+    private static final class Worker
+            implements Runnable, BaseVectorGenerator, EntropySource, TickSource, CorrelationVectorMetrics {
+
+        private final CorrelationVectorTrafficGenerator generator;
+        private final Path file;
+        private final long trees;
+        private final CorrelationVectorFactory factory;
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] base = new byte[16];
+        private FileChannel channel;
+        private int position;
+        private long state;
+        private long ticks = START_MILLIS * TICKS_PER_MILLISECOND;
+
+        long operations;
+        IOException failure;
+
+        Worker(CorrelationVectorTrafficGenerator generator, Path file, long seed, long trees) {
+            this.generator = generator;
+            this.file = file;
+            this.trees = trees;
+            this.state = seed;
+            this.factory = CorrelationVectorFactory.builder().baseGenerator(this).entropySource(this)
+                    .tickSource(this)
+                    .metrics(generator.metrics == null ? this
+                            : new CompositeCorrelationVectorMetrics(this, generator.metrics))
+                    .build();
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                try {
+                    if (this.generator.format == Format.Binary) {
+                        final ByteBuffer header = ByteBuffer.wrap(this.buffer);
+                        header.putInt(CorrelationVectorRecorder.FILE_MAGIC)
+                                .putInt(CorrelationVectorRecorder.SLOT_SIZE);
+                        this.position = header.position();
+                    }
+                    for (long i = 0; i < this.trees && this.failure == null; i++) {
+                        this.generateTree();
+                    }
+                    this.flush();
+                } finally {
+                    this.channel.close();
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            }
+        }
+
+        private void generateTree() {
+            final CorrelationVector root = this.factory.create(
+                    this.nextDouble() < this.generator.v2Fraction ? CorrelationVectorVersion.V2
+                            : CorrelationVectorVersion.V1);
+            if (this.nextDouble() < this.generator.chainFraction) {
+                CorrelationVector correlationVector = root;
+                while (!correlationVector.isImmutable()) {
+                    correlationVector = this.factory.extend(this.call(correlationVector).increment());
+                }
+            } else {
+                this.generateCalls(root, 0);
+            }
+        }
+
+        private void generateCalls(CorrelationVector correlationVector, int depth) {
+            if (depth == this.generator.depth) {
+                return;
+            }
+            final int calls = depth == 0 ? 1 + this.nextInt(this.generator.fanOut)
+                    : this.nextInt(this.generator.fanOut + 1);
+            CorrelationVector caller = correlationVector;
+            for (int i = 0; i < calls; i++) {
+                caller = this.call(caller);
+                this.generateCalls(this.factory.extend(caller.increment()), depth + 1);
+            }
+        }
+
+        /**
+         * Gets the vector of the caller of the next call, spun for a fraction of
+         * the calls.
+         */
+        private CorrelationVector call(CorrelationVector correlationVector) {
+            return this.nextDouble() < this.generator.spinFraction
+                    ? this.factory.spin(correlationVector.getValue())
+                    : correlationVector;
+        }
+
+        private void write(CorrelationVectorOperation operation, CorrelationVector correlationVector) {
+            this.ticks += this.nextInt(100);
+            this.operations++;
+            try {
+                if (this.generator.format == Format.Binary) {
+                    this.writeRecord(operation, correlationVector);
+                } else {
+                    this.writeLine(operation, correlationVector);
+                }
+            } catch (IOException e) {
+                // Rethrown by the final flush, as the factory does not expect its
+                // metrics to fail.
+                this.failure = e;
+            }
+        }
+
+        private void writeRecord(CorrelationVectorOperation operation, CorrelationVector correlationVector)
+                throws IOException {
+            this.ensureCapacity(CorrelationVectorRecorder.SLOT_SIZE);
+            final int offset = this.position;
+            final long timestamp = this.ticks / TICKS_PER_MILLISECOND;
+            for (int i = 7; i >= 0; i--) {
+                this.buffer[offset + 7 - i] = (byte) (timestamp >>> (i * 8));
+            }
+
+            int length = correlationVector.writeTo(this.buffer, offset + CorrelationVectorRecorder.VALUE_OFFSET,
+                    CorrelationVectorRecorder.MAX_VALUE_LENGTH);
+            int flags = 0;
+            if (length < 0) {
+                length = Math.min(correlationVector.getBaseVector().length(),
+                        CorrelationVectorRecorder.MAX_VALUE_LENGTH);
+                flags = CorrelationVectorRecorder.TRUNCATED_FLAG;
+            }
+            this.buffer[offset + CorrelationVectorRecorder.OPERATION_OFFSET] = (byte) (operation.ordinal() | flags);
+            this.buffer[offset + CorrelationVectorRecorder.LENGTH_OFFSET] = (byte) length;
+            // Clears the rest of the slot, left over from a previous record.
+            for (int i = offset + CorrelationVectorRecorder.VALUE_OFFSET + length; i < offset
+                    + CorrelationVectorRecorder.SLOT_SIZE; i++) {
+                this.buffer[i] = 0;
+            }
+            this.position += CorrelationVectorRecorder.SLOT_SIZE;
+        }
+
+        private void writeLine(CorrelationVectorOperation operation, CorrelationVector correlationVector)
+                throws IOException {
+            this.ensureCapacity(MAX_TEXT_LINE);
+            long timestamp = this.ticks / TICKS_PER_MILLISECOND;
+            int digits = 1;
+            for (long remaining = timestamp / 10; remaining > 0; remaining /= 10) {
+                digits++;
+            }
+            for (int i = this.position + digits - 1; i >= this.position; i--) {
+                this.buffer[i] = (byte) ('0' + timestamp % 10);
+                timestamp /= 10;
+            }
+            this.position += digits;
+            this.buffer[this.position++] = '\t';
+
+            final byte[] name = OPERATION_NAMES[operation.ordinal()];
+            System.arraycopy(name, 0, this.buffer, this.position, name.length);
+            this.position += name.length;
+            this.buffer[this.position++] = '\t';
+
+            final int length = correlationVector.writeTo(this.buffer, this.position,
+                    CorrelationVectorRecorder.MAX_VALUE_LENGTH);
+            this.position += length < 0
+                    ? Math.min(correlationVector.getBaseVector().length(), CorrelationVectorRecorder.MAX_VALUE_LENGTH)
+                    : length;
+            this.buffer[this.position++] = '\n';
+        }
+
+        private void ensureCapacity(int bytes) throws IOException {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            if (this.position + bytes > this.buffer.length) {
+                this.flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            final ByteBuffer pending = ByteBuffer.wrap(this.buffer, 0, this.position);
+            while (pending.hasRemaining()) {
+                this.channel.write(pending);
+            }
+            this.position = 0;
+        }
+
+        private long nextLong() {
+            this.state += GOLDEN_GAMMA;
+            return CorrelationSampler.mix(this.state);
+        }
+
+        private int nextInt(int bound) {
+            return (int) (((this.nextLong() >>> 32) * bound) >>> 32);
+        }
+
+        private double nextDouble() {
+            return (this.nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        @Override
+        public String generateBase(CorrelationVectorVersion version) {
+            CorrelationVector.putLong(this.base, 0, this.nextLong());
+            CorrelationVector.putLong(this.base, 8, this.nextLong());
+            return Base64Encoder.toBase64String(this.base, version == CorrelationVectorVersion.V1 ? 12 : 16);
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) this.nextLong();
+            }
+        }
+
+        @Override
+        public long getTicksSinceEpoch() {
+            return this.ticks;
+        }
+
+        @Override
+        public void onBaseGenerated(CorrelationVectorVersion version) {
+        }
+
+        @Override
+        public void onParse(CorrelationVector correlationVector) {
+        }
+
+        @Override
+        public void onParseFailure(String correlationVector) {
+        }
+
+        @Override
+        public void onExtend(CorrelationVector correlationVector) {
+            this.write(CorrelationVectorOperation.Extend, correlationVector);
+        }
+
+        @Override
+        public void onSpin(CorrelationVector correlationVector) {
+            this.write(CorrelationVectorOperation.Spin, correlationVector);
+        }
+
+        @Override
+        public void onIncrement(CorrelationVector correlationVector, String value) {
+            this.write(CorrelationVectorOperation.Increment, correlationVector);
+        }
+
+        @Override
+        public void onTerminate(CorrelationVector correlationVector) {
+            this.write(CorrelationVectorOperation.Terminate, correlationVector);
+        }
+    }
+
+    /**
+     * Builder of {@link CorrelationVectorTrafficGenerator} instances.
+     */
+    public static final class Builder {
+
+        private long seed;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private Format format = Format.Binary;
+        private String filePrefix = "correlation-vectors";
+        private int depth = 4;
+        private int fanOut = 4;
+        private double spinFraction = 0.05;
+        private double chainFraction = 0.01;
+        private double v2Fraction = 0.5;
+        private CorrelationVectorMetrics metrics;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the seed of the generated traffic. Defaults to 0.
+         *
+         * @param value
+         *            the seed.
+         * @return this builder.
+         */
+        public Builder seed(long value) {
+            this.seed = value;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads generating the traffic, and of files.
+         * Defaults to the number of processors.
+         *
+         * @param value
+         *            number of threads.
+         * @return this builder.
+         */
+        public Builder threads(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("threads must be positive");
+            }
+            this.threads = value;
+            return this;
+        }
+
+        /**
+         * Sets the format of the files. Defaults to {@link Format#Binary}.
+         *
+         * @param value
+         *            file format.
+         * @return this builder.
+         */
+        public Builder format(Format value) {
+            if (value == null) {
+                throw new IllegalArgumentException("format can not be null");
+            }
+            this.format = value;
+            return this;
+        }
+
+        /**
+         * Sets the prefix of the file names. Defaults to "correlation-vectors".
+         *
+         * @param value
+         *            file prefix.
+         * @return this builder.
+         */
+        public Builder filePrefix(String value) {
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("filePrefix can not be null or empty");
+            }
+            this.filePrefix = value;
+            return this;
+        }
+
+        /**
+         * Sets the maximum depth of the call trees: the root operation is at depth
+         * 0 and the operations at the maximum depth make no calls. Defaults to 4.
+         *
+         * @param value
+         *            maximum depth.
+         * @return this builder.
+         */
+        public Builder depth(int value) {
+            if (value <= 0 || value > 64) {
+                throw new IllegalArgumentException("depth must be between 1 and 64");
+            }
+            this.depth = value;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of calls of an operation. The number of calls is
+         * uniform from 0 to the maximum, and at least 1 for the root operation.
+         * Defaults to 4.
+         *
+         * @param value
+         *            maximum number of calls.
+         * @return this builder.
+         */
+        public Builder fanOut(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("fanOut must be positive");
+            }
+            this.fanOut = value;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the calls for which the caller spins its vector
+         * before incrementing it. Defaults to 0.05.
+         *
+         * @param value
+         *            fraction of spun calls.
+         * @return this builder.
+         */
+        public Builder spinFraction(double value) {
+            this.spinFraction = checkFraction(value, "spinFraction");
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the trees that are chains of calls extended until
+         * the vector is terminated. Defaults to 0.01.
+         *
+         * @param value
+         *            fraction of chains.
+         * @return this builder.
+         */
+        public Builder chainFraction(double value) {
+            this.chainFraction = checkFraction(value, "chainFraction");
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the trees whose root creates a V2 vector rather than
+         * a V1 vector. Defaults to 0.5.
+         *
+         * @param value
+         *            fraction of V2 trees.
+         * @return this builder.
+         */
+        public Builder v2Fraction(double value) {
+            this.v2Fraction = checkFraction(value, "v2Fraction");
+            return this;
+        }
+
+        /**
+         * Sets the metrics sink notified of the operations of the generated
+         * traffic, in addition to the files. The sink is called from every thread
+         * of the generator. Defaults to none.
+         *
+         * @param value
+         *            metrics sink.
+         * @return this builder.
+         */
+        public Builder metrics(CorrelationVectorMetrics value) {
+            if (value == null) {
+                throw new IllegalArgumentException("metrics can not be null");
+            }
+            this.metrics = value;
+            return this;
+        }
+
+        /**
+         * Builds a generator with the current configuration.
+         *
+         * @return a new generator.
+         */
+        public CorrelationVectorTrafficGenerator build() {
+            return new CorrelationVectorTrafficGenerator(this);
+        }
+
+        private static double checkFraction(double value, String name) {
+            if (!(value >= 0 && value <= 1)) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1");
+            }
+            return value;
+        }
+    }
+}
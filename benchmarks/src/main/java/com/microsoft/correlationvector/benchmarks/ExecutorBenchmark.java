@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelatedCompletableFuture;
+import com.microsoft.correlationvector.CorrelatedExecutorService;
+import com.microsoft.correlationvector.CorrelationContext;
+import com.microsoft.correlationvector.CorrelationVector;
+
+/**
+ * Compares the task throughput of plain executors with the same executors
+ * wrapped in {@link CorrelatedExecutorService}. The virtual thread executor
+ * requires JDK 21 or later; on older JDKs run with {@code -p executor=forkJoin}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final int TASKS = 10_000;
+
+    @Param({ "forkJoin", "virtual" })
+    public String executor;
+
+    @Param({ "false", "true" })
+    public boolean correlated;
+
+    private ExecutorService delegate;
+    private ExecutorService service;
+    private CorrelationVector correlationVector;
+
+    @Setup(Level.Trial)
+    public void createExecutor() throws Exception {
+        if ("virtual".equals(this.executor)) {
+            this.delegate = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } else {
+            this.delegate = new ForkJoinPool();
+        }
+        this.service = this.correlated ? new CorrelatedExecutorService(this.delegate) : this.delegate;
+    }
+
+    @Setup(Level.Iteration)
+    public void createVector() {
+        this.correlationVector = new CorrelationVector();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdownExecutor() throws InterruptedException {
+        this.service.shutdown();
+        this.service.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void execute() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(TASKS);
+        final Runnable task = latch::countDown;
+
+        final long token = CorrelationContext.attach(this.correlationVector);
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                this.service.execute(task);
+            }
+        } finally {
+            CorrelationContext.detach(token);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void completableFuture() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(TASKS);
+        final Runnable task = latch::countDown;
+
+        final long token = CorrelationContext.attach(this.correlationVector);
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                if (this.correlated) {
+                    CorrelatedCompletableFuture.runAsync(task, this.delegate);
+                } else {
+                    CompletableFuture.runAsync(task, this.delegate);
+                }
+            }
+        } finally {
+            CorrelationContext.detach(token);
+        }
+        latch.await();
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.microsoft.correlationvector.CorrelationVector;
+
+/**
+ * Measures the rendering and incrementing of extensions just below a digit
+ * boundary, where the next increment adds a digit and checks the size of the
+ * vector again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtensionBenchmark {
+
+    private static final int VECTORS = 1024;
+
+    @Param({ "9", "99999", "999999999" })
+    public int extension;
+
+    private String value;
+    private final CorrelationVector[] vectors = new CorrelationVector[VECTORS];
+
+    @Setup(Level.Trial)
+    public void setUpValue() {
+        this.value = "tul4NUsfs9Cl7mOf.1.2." + this.extension;
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpVectors() {
+        for (int i = 0; i < VECTORS; i++) {
+            this.vectors[i] = CorrelationVector.parse(this.value);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public void getValue(Blackhole blackhole) {
+        for (final CorrelationVector vector : this.vectors) {
+            blackhole.consume(vector.getValue());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public void increment(Blackhole blackhole) {
+        for (final CorrelationVector vector : this.vectors) {
+            blackhole.consume(vector.increment());
+        }
+    }
+}
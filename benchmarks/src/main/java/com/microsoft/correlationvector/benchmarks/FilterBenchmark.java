@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorFilter;
+
+/**
+ * Compares {@link CorrelationVectorFilter} with a concurrent set of strings
+ * holding the same vectors, for duplicate detection of header values. The
+ * setup prints the memory per entry of each; run with {@code -t 1}, {@code -t 2}
+ * and so on to measure the throughput across threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class FilterBenchmark {
+
+    private static final int ENTRIES = 1 << 20;
+    private static final int VALUES = 1 << 16;
+
+    @Param({ "filter", "set" })
+    public String store;
+
+    private CorrelationVectorFilter filter;
+    private Set<String> set;
+    private final String[] values = new String[VALUES];
+
+    @Setup(Level.Trial)
+    public void populate() {
+        final long before = usedHeap();
+        if ("filter".equals(this.store)) {
+            this.filter = CorrelationVectorFilter.builder().expectedInsertions(ENTRIES).falsePositiveRate(0.001)
+                    .window(1, TimeUnit.HOURS).build();
+        } else {
+            this.set = ConcurrentHashMap.newKeySet(ENTRIES);
+        }
+
+        // Half of the looked up values were added, as when most deliveries are
+        // not duplicates.
+        CorrelationVector cV = new CorrelationVector();
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % 256 == 0) {
+                cV = CorrelationVector.extend(new CorrelationVector().increment());
+            }
+            final String value = cV.increment();
+            if (i < VALUES / 2) {
+                this.values[2 * i] = value;
+                this.values[2 * i + 1] = CorrelationVector.extend(value).increment();
+            }
+            if (this.filter != null) {
+                this.filter.add(value);
+            } else {
+                this.set.add(value);
+            }
+        }
+
+        final long bytes = this.filter != null ? this.filter.getMemoryBytes() : usedHeap() - before;
+        System.out.printf("%n# %s: %.1f bytes per entry%n", this.store, (double) bytes / ENTRIES);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public boolean mightContain(Cursor cursor) {
+        final String value = this.values[cursor.next++ & (VALUES - 1)];
+        return this.filter != null ? this.filter.mightContain(value) : this.set.contains(value);
+    }
+
+    @Benchmark
+    public boolean add(Cursor cursor) {
+        final String value = this.values[cursor.next++ & (VALUES - 1)];
+        return this.filter != null ? this.filter.add(value) : this.set.add(value);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.microsoft.correlationvector.CorrelatedItem;
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorProcessor;
+
+/**
+ * Measures the item rate of a synchronous stream stamped by
+ * {@link CorrelationVectorProcessor}, with and without batched demand, against
+ * the same stream without the processor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowProcessorBenchmark {
+
+    private static final int ITEMS = 100_000;
+
+    @Param({ "256" })
+    public int requestSize;
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void baseline(Blackhole blackhole) {
+        new RangePublisher(ITEMS).subscribe(new DrainingSubscriber<Integer>(this.requestSize, blackhole));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void incrementPerItem(Blackhole blackhole) {
+        this.stamp(CorrelationVectorProcessor.Mode.Increment, false, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void incrementBatched(Blackhole blackhole) {
+        this.stamp(CorrelationVectorProcessor.Mode.Increment, true, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void extendPerItem(Blackhole blackhole) {
+        this.stamp(CorrelationVectorProcessor.Mode.Extend, false, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void extendBatched(Blackhole blackhole) {
+        this.stamp(CorrelationVectorProcessor.Mode.Extend, true, blackhole);
+    }
+
+    private void stamp(CorrelationVectorProcessor.Mode mode, boolean batched, Blackhole blackhole) {
+        final CorrelationVectorProcessor<Integer> processor = new CorrelationVectorProcessor<>(new CorrelationVector(),
+                mode, batched);
+        processor.subscribe(new DrainingSubscriber<CorrelatedItem<Integer>>(this.requestSize, blackhole));
+        new RangePublisher(ITEMS).subscribe(processor);
+    }
+
+    /**
+     * Publishes the integers from 0 to count on the requesting thread.
+     */
+    private static final class RangePublisher implements Flow.Publisher<Integer> {
+
+        private final int count;
+
+        RangePublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int next;
+                private long requested;
+                private boolean emitting;
+
+                @Override
+                public void request(long n) {
+                    this.requested += n;
+                    if (this.emitting) {
+                        return;
+                    }
+                    this.emitting = true;
+                    while (this.requested > 0 && this.next < count) {
+                        this.requested--;
+                        subscriber.onNext(this.next++);
+                    }
+                    this.emitting = false;
+                    if (this.next == count) {
+                        this.next++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    this.next = count + 1;
+                }
+            });
+        }
+    }
+
+    /**
+     * Consumes every item, requesting them in batches.
+     */
+    private static final class DrainingSubscriber<T> implements Flow.Subscriber<T> {
+
+        private final int requestSize;
+        private final Blackhole blackhole;
+        private Flow.Subscription subscription;
+        private int remaining;
+
+        DrainingSubscriber(int requestSize, Blackhole blackhole) {
+            this.requestSize = requestSize;
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            this.remaining = this.requestSize;
+            subscription.request(this.requestSize);
+        }
+
+        @Override
+        public void onNext(T item) {
+            this.blackhole.consume(item);
+            if (--this.remaining == 0) {
+                this.remaining = this.requestSize;
+                this.subscription.request(this.requestSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorFactory;
+import com.microsoft.correlationvector.CorrelationVectorVersion;
+import com.microsoft.correlationvector.FastStartBaseVectorGenerator;
+
+/**
+ * Measures the hot paths of the library: incrementing a vector, rendering its
+ * value and generating bases. These paths have no Java version specific
+ * implementations, so running the benchmark on each JDK of the matrix with
+ * {@code -jvm} compares the JDKs on the same Java 7 bytecode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    private final CorrelationVector shared = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+    private final CorrelationVectorFactory fastStart = CorrelationVectorFactory.builder()
+            .baseGenerator(FastStartBaseVectorGenerator.withoutReseed()).build();
+
+    @Benchmark
+    public String increment() {
+        return this.shared.increment();
+    }
+
+    @Benchmark
+    public String getValue() {
+        return this.shared.getValue();
+    }
+
+    @Benchmark
+    public CorrelationVector createV1() {
+        return this.fastStart.create(CorrelationVectorVersion.V1);
+    }
+
+    @Benchmark
+    public CorrelationVector createV2() {
+        return this.fastStart.create(CorrelationVectorVersion.V2);
+    }
+
+    @Benchmark
+    public CorrelationVector createV2RandomUuid() {
+        return CorrelationVectorFactory.getDefault().create(CorrelationVectorVersion.V2);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationContext;
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorHttpFilter;
+import com.microsoft.correlationvector.CorrelationVectorHttpRequests;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures the overhead of propagating the correlation vector over HTTP, with
+ * an in-process JDK HTTP server on the loopback interface and the JDK HTTP
+ * client. With {@code propagation=cv} the server runs
+ * {@link CorrelationVectorHttpFilter} and the handler increments the request
+ * vector as for an outbound call, and the client decorates each request with
+ * {@link CorrelationVectorHttpRequests}. {@code request} builds the request
+ * only; {@code roundTrip} sends it. Run with {@code -t} to load the server from
+ * several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpBenchmark {
+
+    @Param({ "none", "cv" })
+    public String propagation;
+
+    private final CorrelationVector correlationVector = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private HttpClient client;
+    private URI uri;
+    private boolean propagate;
+
+    @Setup
+    public void start() throws IOException {
+        this.propagate = "cv".equals(this.propagation);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", exchange -> {
+            final CorrelationVector current = CorrelationContext.current();
+            if (current != null) {
+                current.increment();
+            }
+            // Draining the request lets the server reuse the connection.
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        }).getFilters().addAll(
+                this.propagate ? List.of(new CorrelationVectorHttpFilter()) : List.of());
+        this.server.start();
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.uri = URI.create("http://localhost:" + this.server.getAddress().getPort() + "/");
+    }
+
+    @TearDown
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    @Benchmark
+    public HttpRequest request() {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(this.uri);
+        if (this.propagate) {
+            CorrelationVectorHttpRequests.propagate(builder, this.correlationVector);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException, InterruptedException {
+        return this.client.send(this.request(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
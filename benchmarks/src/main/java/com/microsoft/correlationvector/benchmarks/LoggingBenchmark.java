@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationVector;
+
+/**
+ * Measures formatting a log line that includes a correlation vector into a
+ * reused buffer, through its string value, {@link CorrelationVector#appendTo}
+ * and {@link CorrelationVector#asCharSequence()}. Run with {@code -prof gc} to
+ * compare the bytes allocated per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final String MESSAGE = "Request completed cv=";
+
+    private final CorrelationVector vector = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1.2.3.4");
+    private final StringBuilder line = new StringBuilder(256);
+
+    @Benchmark
+    public int getValue() {
+        this.line.setLength(0);
+        this.line.append(MESSAGE).append(this.vector.getValue());
+        return this.line.length();
+    }
+
+    @Benchmark
+    public int appendTo() {
+        this.line.setLength(0);
+        this.vector.appendTo(this.line.append(MESSAGE));
+        return this.line.length();
+    }
+
+    @Benchmark
+    public int asCharSequence() {
+        this.line.setLength(0);
+        this.line.append(MESSAGE).append(this.vector.asCharSequence());
+        return this.line.length();
+    }
+}
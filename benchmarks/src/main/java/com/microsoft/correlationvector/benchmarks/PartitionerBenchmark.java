@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationPartitioner;
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorVersion;
+
+/**
+ * Compares the rate of partitioning header values with
+ * {@link CorrelationPartitioner} against parsing them and taking the hash code
+ * of the base modulo the number of partitions. The setup prints the skew of
+ * both over random bases: the load of the fullest partition over the mean
+ * load.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionerBenchmark {
+
+    private static final int VECTORS = 1024;
+    private static final int SKEW_SAMPLES = 1 << 20;
+
+    @Param({ "V1", "V2" })
+    public CorrelationVectorVersion version;
+
+    @Param({ "16", "100" })
+    public int partitions;
+
+    private final String[] values = new String[VECTORS];
+    private final byte[][] bytes = new byte[VECTORS][];
+    private CorrelationPartitioner partitioner;
+
+    @Setup
+    public void setUp() {
+        this.partitioner = CorrelationPartitioner.ofPartitions(this.partitions);
+        for (int i = 0; i < VECTORS; i++) {
+            final CorrelationVector cv = new CorrelationVector(this.version);
+            cv.increment();
+            this.values[i] = CorrelationVector.extend(cv.getValue()).getValue();
+            this.bytes[i] = this.values[i].getBytes(StandardCharsets.US_ASCII);
+        }
+
+        final int[] hashCodeLoads = new int[this.partitions];
+        final int[] partitionerLoads = new int[this.partitions];
+        for (int i = 0; i < SKEW_SAMPLES; i++) {
+            final String base = new CorrelationVector(this.version).getBaseVector();
+            hashCodeLoads[Math.floorMod(base.hashCode(), this.partitions)]++;
+            partitionerLoads[this.partitioner.partition(base)]++;
+        }
+        System.out.printf("%n# skew: hashCode %.4f, partitioner %.4f%n", skew(hashCodeLoads),
+                skew(partitionerLoads));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int parseHashCode() {
+        int sum = 0;
+        for (final String value : this.values) {
+            sum += Math.floorMod(CorrelationVector.parse(value).getBaseVector().hashCode(), this.partitions);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int partitionString() {
+        int sum = 0;
+        for (final String value : this.values) {
+            sum += this.partitioner.partition(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int partitionBytes() {
+        int sum = 0;
+        for (final byte[] value : this.bytes) {
+            sum += this.partitioner.partition(value, 0, value.length);
+        }
+        return sum;
+    }
+
+    private static double skew(int[] loads) {
+        int max = 0;
+        for (final int load : loads) {
+            max = Math.max(max, load);
+        }
+        return max / ((double) SKEW_SAMPLES / loads.length);
+    }
+}
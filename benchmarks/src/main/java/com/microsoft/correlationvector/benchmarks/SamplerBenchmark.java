@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationSampler;
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorVersion;
+
+/**
+ * Measures the rate of sampling decisions made by {@link CorrelationSampler}
+ * on header values, against hashing a substring of the base with
+ * {@link String#hashCode()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplerBenchmark {
+
+    private static final int VECTORS = 1024;
+
+    @Param({ "V1", "V2" })
+    public CorrelationVectorVersion version;
+
+    private final String[] values = new String[VECTORS];
+    private final CorrelationSampler sampler = CorrelationSampler.ofTiers(0.01, 0.1);
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < VECTORS; i++) {
+            final CorrelationVector cv = new CorrelationVector(this.version);
+            cv.increment();
+            this.values[i] = CorrelationVector.extend(cv.getValue()).getValue();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int substringHashCode() {
+        int sampled = 0;
+        for (final String value : this.values) {
+            final int hash = value.substring(0, value.indexOf(CorrelationVector.CV_DELIMITER)).hashCode();
+            if ((hash & Integer.MAX_VALUE) % 100 == 0) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int isSampled() {
+        int sampled = 0;
+        for (final String value : this.values) {
+            if (this.sampler.isSampled(value)) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VECTORS)
+    public int getTier() {
+        int tiers = 0;
+        for (final String value : this.values) {
+            tiers += this.sampler.getTier(value);
+        }
+        return tiers;
+    }
+}
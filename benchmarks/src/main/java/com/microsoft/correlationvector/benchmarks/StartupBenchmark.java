@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorFactory;
+import com.microsoft.correlationvector.FastStartBaseVectorGenerator;
+
+/**
+ * Measures the time to create the first correlation vector in a fresh JVM. Each
+ * fork runs a single invocation, so the score includes class loading and
+ * initialization of the library and of the random sources it uses.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, batchSize = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    @Benchmark
+    public String firstDefaultVector() {
+        return new CorrelationVector().getValue();
+    }
+
+    @Benchmark
+    public String firstFastStartVector() {
+        return CorrelationVectorFactory.builder().baseGenerator(new FastStartBaseVectorGenerator()).build().create()
+                .getValue();
+    }
+}
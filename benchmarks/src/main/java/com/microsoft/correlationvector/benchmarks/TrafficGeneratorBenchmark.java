@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationVectorTrafficGenerator;
+
+/**
+ * Measures the time to generate a call tree with
+ * {@link CorrelationVectorTrafficGenerator} and write it to a temporary
+ * directory, in each format and with a number of threads. The tear down prints
+ * the number of operations per tree, to convert the result to vectors per
+ * second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficGeneratorBenchmark {
+
+    private static final int TREES = 100000;
+
+    @Param({ "Binary", "Text" })
+    public CorrelationVectorTrafficGenerator.Format format;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private CorrelationVectorTrafficGenerator generator;
+    private Path directory;
+    private long operations;
+    private long trees;
+
+    @Setup
+    public void create() throws IOException {
+        this.generator = CorrelationVectorTrafficGenerator.builder().seed(1).threads(this.threads)
+                .format(this.format).build();
+        this.directory = Files.createTempDirectory("cv-traffic");
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (final Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+        System.out.println();
+        System.out.printf("operations per tree: %.1f%n", (double) this.operations / this.trees);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TREES)
+    public long generate() throws IOException {
+        final long written = this.generator.generate(this.directory, TREES);
+        this.operations += written;
+        this.trees += TREES;
+        return written;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.correlationvector.CorrelationVector;
+import com.microsoft.correlationvector.CorrelationVectorFactory;
+import com.microsoft.correlationvector.CorrelationVectorValidator;
+import com.microsoft.correlationvector.CorrelationVectorVersion;
+
+/**
+ * Compares validating a batch of header values by creating vectors with a
+ * validating factory with {@link CorrelationVectorValidator} on the values in
+ * strings and in a column of ASCII bytes. One value in ten is invalid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    private static final int BATCH = 4096;
+
+    private final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+            .validateDuringCreation(true).build();
+    private final CorrelationVectorValidator validator = CorrelationVectorValidator.anyVersion();
+
+    private final String[] values = new String[BATCH];
+    private final int[] offsets = new int[BATCH + 1];
+    private final boolean[] results = new boolean[BATCH];
+    private byte[] column;
+
+    @Setup
+    public void generate() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BATCH; i++) {
+            final CorrelationVector cV = this.factory
+                    .create(i % 2 == 0 ? CorrelationVectorVersion.V1 : CorrelationVectorVersion.V2);
+            for (int j = i % 4; j > 0; j--) {
+                cV.increment();
+            }
+            final String value = CorrelationVector.extend(cV.increment()).increment();
+            this.values[i] = i % 10 == 0 ? value + "x" : value;
+            builder.append(this.values[i]);
+            this.offsets[i + 1] = builder.length();
+        }
+        this.column = builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int factory() {
+        int valid = 0;
+        for (int i = 0; i < BATCH; i++) {
+            try {
+                this.factory.parse(this.values[i]);
+                valid++;
+            } catch (IllegalArgumentException e) {
+                // Counted as invalid.
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int strings() {
+        return this.validator.validate(this.values, this.results);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int column() {
+        return this.validator.validate(this.column, this.offsets, this.results);
+    }
+}
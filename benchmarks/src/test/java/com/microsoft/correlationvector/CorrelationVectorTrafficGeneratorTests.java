@@ -0,0 +1,85 @@
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorrelationVectorTrafficGeneratorTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsCoverEveryOperation() throws IOException {
+        final Path directory = this.folder.getRoot().toPath();
+        final long operations = CorrelationVectorTrafficGenerator.builder().seed(7).threads(2).chainFraction(0.1)
+                .spinFraction(0.1).build().generate(directory, 200);
+
+        final Map<CorrelationVectorOperation, Integer> counts = new EnumMap<>(CorrelationVectorOperation.class);
+        long records = 0;
+        for (final Path file : CorrelationVectorRecorder.listFiles(directory, "correlation-vectors")) {
+            try (CorrelationVectorRecordReader reader = new CorrelationVectorRecordReader(file)) {
+                CorrelationVectorRecord record;
+                while ((record = reader.read()) != null) {
+                    final Integer count = counts.get(record.getOperation());
+                    counts.put(record.getOperation(), count == null ? 1 : count + 1);
+                    Assert.assertFalse(record.isTruncated());
+                    Assert.assertEquals(record.getOperation() == CorrelationVectorOperation.Terminate,
+                            record.getValue().endsWith("!"));
+                    records++;
+                }
+            }
+        }
+        Assert.assertEquals(operations, records);
+        Assert.assertEquals(CorrelationVectorOperation.values().length, counts.size());
+    }
+
+    @Test
+    public void metricsAreNotifiedOfEveryOperation() throws IOException {
+        final StripedCorrelationVectorMetrics metrics = new StripedCorrelationVectorMetrics();
+        final long operations = CorrelationVectorTrafficGenerator.builder().seed(7).threads(2).chainFraction(0.1)
+                .metrics(metrics).build().generate(this.folder.getRoot().toPath(), 50);
+
+        final CorrelationVectorMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(operations, snapshot.getExtendCount() + snapshot.getSpinCount()
+                + snapshot.getIncrementCount() + snapshot.getTerminateCount());
+    }
+
+    @Test
+    public void sameSeedGeneratesSameTraffic() throws IOException {
+        final CorrelationVectorTrafficGenerator generator = CorrelationVectorTrafficGenerator.builder().seed(42)
+                .threads(3).format(CorrelationVectorTrafficGenerator.Format.Text).build();
+        final Path first = this.folder.newFolder("first").toPath();
+        final Path second = this.folder.newFolder("second").toPath();
+        final long operations = generator.generate(first, 100);
+        Assert.assertEquals(operations, generator.generate(second, 100));
+
+        long lines = 0;
+        for (int i = 0; i < 3; i++) {
+            final String name = "correlation-vectors." + i + ".txt";
+            final byte[] bytes = Files.readAllBytes(first.resolve(name));
+            Assert.assertArrayEquals(bytes, Files.readAllBytes(second.resolve(name)));
+            final List<String> content = Files.readAllLines(first.resolve(name), StandardCharsets.US_ASCII);
+            for (final String line : content) {
+                Assert.assertEquals(line, 3, line.split("\t").length);
+            }
+            lines += content.size();
+        }
+        Assert.assertEquals(operations, lines);
+
+        final Path other = this.folder.newFolder("other").toPath();
+        CorrelationVectorTrafficGenerator.builder().seed(43).threads(3)
+                .format(CorrelationVectorTrafficGenerator.Format.Text).build().generate(other, 100);
+        Assert.assertFalse(Files.readAllLines(first.resolve("correlation-vectors.0.txt"), StandardCharsets.US_ASCII)
+                .equals(Files.readAllLines(other.resolve("correlation-vectors.0.txt"), StandardCharsets.US_ASCII)));
+    }
+}
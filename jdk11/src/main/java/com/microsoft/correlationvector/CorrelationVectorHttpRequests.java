@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.net.http.HttpRequest;
+
+/**
+ * Decorates the requests of the JDK HTTP client with the
+ * {@value CorrelationVector#HEADER_NAME} header:
+ *
+ * <pre>
+ * final HttpRequest request = CorrelationVectorHttpRequests.propagate(HttpRequest.newBuilder(uri)).build();
+ * </pre>
+ *
+ * Each decorated request carries the next child of the vector, incremented
+ * once per request. The header is set to the value returned by the increment,
+ * which is rendered once and not copied. This class is only available on Java
+ * 11 and later.
+ */
+public final class CorrelationVectorHttpRequests {
+
+    private CorrelationVectorHttpRequests() {
+    }
+
+    /**
+     * Sets the header of the given request to the next child of the current
+     * correlation vector. The request is left unchanged when no vector is
+     * current.
+     *
+     * @param builder
+     *            the builder of the request.
+     * @return the builder.
+     */
+    public static HttpRequest.Builder propagate(HttpRequest.Builder builder) {
+        final CorrelationVector correlationVector = CorrelationContext.current();
+        return correlationVector != null ? propagate(builder, correlationVector) : builder;
+    }
+
+    /**
+     * Sets the header of the given request to the next child of the given
+     * correlation vector.
+     *
+     * @param builder
+     *            the builder of the request.
+     * @param correlationVector
+     *            the CV of the operation sending the request.
+     * @return the builder.
+     */
+    public static HttpRequest.Builder propagate(HttpRequest.Builder builder, CorrelationVector correlationVector) {
+        return builder.setHeader(CorrelationVector.HEADER_NAME, correlationVector.increment());
+    }
+}
@@ -0,0 +1,57 @@
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class CorrelationVectorHttpRequestsTests {
+
+    @Test
+    public void requestsCarryChildrenOfTheCurrentVectorToTheServer() throws IOException, InterruptedException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            final byte[] body = CorrelationContext.current().getValue().getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }).getFilters().add(new CorrelationVectorHttpFilter());
+        server.start();
+        try {
+            final URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+            final HttpClient client = HttpClient.newHttpClient();
+
+            final CorrelationVector correlationVector = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+            final long token = CorrelationContext.attach(correlationVector);
+            try {
+                Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1.0", send(client, uri));
+                Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2.0", send(client, uri));
+            } finally {
+                CorrelationContext.detach(token);
+            }
+            Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2", correlationVector.getValue());
+
+            // Without a current vector the request has no header, and the server creates a vector.
+            final String created = send(client, uri);
+            Assert.assertFalse(created.startsWith("tul4NUsfs9Cl7mOf"));
+            Assert.assertTrue(created.endsWith(".0"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static String send(HttpClient client, URI uri) throws IOException, InterruptedException {
+        final HttpRequest request = CorrelationVectorHttpRequests.propagate(HttpRequest.newBuilder(uri)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.US_ASCII)).body();
+    }
+}
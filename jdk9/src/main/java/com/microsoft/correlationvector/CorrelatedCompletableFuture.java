@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture that propagates a correlation vector to its asynchronous
+ * stages. The vector current when the future is created is the parent of every
+ * asynchronous stage of the future and of the stages derived from it: each
+ * stage run on the default executor runs with its own child of that vector.
+ *
+ * @param <T>
+ *            The result type of the future.
+ */
+public class CorrelatedCompletableFuture<T> extends CompletableFuture<T> {
+
+    private final CorrelatedExecutor executor;
+
+    /**
+     * Creates an incomplete future that propagates the current correlation
+     * vector to stages run on the common pool.
+     */
+    public CorrelatedCompletableFuture() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an incomplete future that propagates the current correlation
+     * vector to stages run on the given executor.
+     *
+     * @param executor
+     *            the default executor of the asynchronous stages.
+     */
+    public CorrelatedCompletableFuture(Executor executor) {
+        this(new CorrelatedExecutor(executor, CorrelationContext.current()));
+    }
+
+    private CorrelatedCompletableFuture(CorrelatedExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns a new future that is asynchronously completed by a task running on
+     * the common pool with a child of the current correlation vector.
+     *
+     * @param supplier
+     *            a function returning the value used to complete the future.
+     * @param <U>
+     *            the function's return type.
+     * @return the new future.
+     */
+    public static <U> CorrelatedCompletableFuture<U> supplyAsync(Supplier<U> supplier) {
+        return supplyAsync(supplier, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a new future that is asynchronously completed by a task running on
+     * the given executor with a child of the current correlation vector.
+     *
+     * @param supplier
+     *            a function returning the value used to complete the future.
+     * @param executor
+     *            the executor to use for asynchronous execution.
+     * @param <U>
+     *            the function's return type.
+     * @return the new future.
+     */
+    public static <U> CorrelatedCompletableFuture<U> supplyAsync(Supplier<U> supplier, Executor executor) {
+        final CorrelatedCompletableFuture<U> future = new CorrelatedCompletableFuture<>(executor);
+        future.executor.execute(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a new future that is asynchronously completed by a task running on
+     * the common pool with a child of the current correlation vector.
+     *
+     * @param runnable
+     *            the action to run before completing the future.
+     * @return the new future.
+     */
+    public static CorrelatedCompletableFuture<Void> runAsync(Runnable runnable) {
+        return runAsync(runnable, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a new future that is asynchronously completed by a task running on
+     * the given executor with a child of the current correlation vector.
+     *
+     * @param runnable
+     *            the action to run before completing the future.
+     * @param executor
+     *            the executor to use for asynchronous execution.
+     * @return the new future.
+     */
+    public static CorrelatedCompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Gets the parent vector of the asynchronous stages of this future.
+     *
+     * @return the parent CV, or null if there is none.
+     */
+    public CorrelationVector getParent() {
+        return this.executor.parent();
+    }
+
+    @Override
+    public Executor defaultExecutor() {
+        return this.executor;
+    }
+
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new CorrelatedCompletableFuture<>(this.executor);
+    }
+}
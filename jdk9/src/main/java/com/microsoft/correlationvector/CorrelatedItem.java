@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * An item of a stream together with its correlation vector.
+ *
+ * @param <T>
+ *            The item type.
+ */
+public final class CorrelatedItem<T> {
+
+    private final T item;
+    private final CorrelationVector correlationVector;
+
+    /**
+     * Creates a correlated item.
+     *
+     * @param item
+     *            the item.
+     * @param correlationVector
+     *            the CV of the item.
+     */
+    public CorrelatedItem(T item, CorrelationVector correlationVector) {
+        this.item = item;
+        this.correlationVector = correlationVector;
+    }
+
+    /**
+     * Gets the item.
+     *
+     * @return the item.
+     */
+    public T getItem() {
+        return this.item;
+    }
+
+    /**
+     * Gets the correlation vector of the item.
+     *
+     * @return the CV of the item.
+     */
+    public CorrelationVector getCorrelationVector() {
+        return this.correlationVector;
+    }
+
+    @Override
+    public String toString() {
+        return this.correlationVector + " " + this.item;
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processor that stamps each item of a stream with its own correlation vector
+ * derived from a parent vector. Item i of the stream receives the i-th
+ * increment of the parent, either as is or extended, depending on the
+ * {@link Mode}.
+ * <p/>
+ * In batched-demand mode the processor reserves a block of increments of the
+ * parent for the outstanding demand with a single atomic update, instead of one
+ * update per item. Increments reserved for items that never arrive, because the
+ * stream completed or was cancelled, are skipped by later increments of the
+ * parent.
+ * <p/>
+ * In {@link Mode#Increment} mode the vector of an item is fixed: incrementing
+ * it returns its value unchanged, since the following extension of the parent
+ * belongs to the next item.
+ * <p/>
+ * The processor supports a single subscriber. A completion or error of the
+ * publisher before the subscriber is connected is delivered once it is.
+ *
+ * @param <T>
+ *            The item type.
+ */
+public class CorrelationVectorProcessor<T> implements Flow.Processor<T, CorrelatedItem<T>> {
+
+    /**
+     * How the vector of an item is derived from the parent vector.
+     */
+    public enum Mode {
+        /**
+         * The item receives the incremented parent, e.g. {@code base.1.5} for the
+         * fifth item of parent {@code base.1}. Use this for the vector passed to
+         * the outbound message of the item.
+         */
+        Increment,
+        /**
+         * The item receives the incremented parent extended, e.g.
+         * {@code base.1.5.0} for the fifth item of parent {@code base.1}. Use this
+         * for the vector of the operation processing the item.
+         */
+        Extend
+    }
+
+    private static final int MAX_BLOCK_SIZE = 1024;
+
+    private final CorrelationVector parent;
+    private final Mode mode;
+    private final boolean batchedDemand;
+
+    private final AtomicLong outstanding = new AtomicLong();
+
+    // Guarded by this.
+    private Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super CorrelatedItem<T>> downstream;
+    private boolean connected;
+    private boolean subscribed;
+    private boolean terminated;
+    private Throwable failure;
+
+    // Only accessed from onNext, which the publisher never calls concurrently.
+    private String blockBase;
+    private int nextExtension;
+    private int blockRemaining;
+
+    /**
+     * Creates a processor stamping items with increments of the given parent
+     * vector.
+     *
+     * @param parent
+     *            the parent CV.
+     * @param mode
+     *            how the vector of an item is derived from the parent.
+     * @param batchedDemand
+     *            whether to reserve increments in blocks for the outstanding
+     *            demand.
+     */
+    public CorrelationVectorProcessor(CorrelationVector parent, Mode mode, boolean batchedDemand) {
+        if (parent == null || mode == null) {
+            throw new IllegalArgumentException("parent and mode can not be null");
+        }
+        this.parent = parent;
+        this.mode = mode;
+        this.batchedDemand = batchedDemand;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CorrelatedItem<T>> subscriber) {
+        synchronized (this) {
+            if (this.downstream == null) {
+                this.downstream = subscriber;
+                subscriber = null;
+            }
+        }
+
+        if (subscriber != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("CorrelationVectorProcessor supports a single subscriber"));
+            return;
+        }
+        this.connect();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (this.upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            this.upstream = subscription;
+        }
+        this.connect();
+    }
+
+    @Override
+    public void onNext(T item) {
+        this.downstream.onNext(new CorrelatedItem<>(item, this.nextVector()));
+        if (this.outstanding.get() != Long.MAX_VALUE) {
+            this.outstanding.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (!this.subscribed) {
+                this.terminated = true;
+                this.failure = throwable;
+                return;
+            }
+        }
+        this.downstream.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            if (!this.subscribed) {
+                this.terminated = true;
+                return;
+            }
+        }
+        this.downstream.onComplete();
+    }
+
+    /**
+     * Gives the subscriber its subscription once both the publisher and the
+     * subscriber are known.
+     */
+    private void connect() {
+        synchronized (this) {
+            if (this.connected || this.upstream == null || this.downstream == null) {
+                return;
+            }
+            this.connected = true;
+        }
+
+        final Flow.Subscription subscription = this.upstream;
+        final Flow.Subscriber<? super CorrelatedItem<T>> subscriber = this.downstream;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n > 0) {
+                    addOutstanding(n);
+                }
+                subscription.request(n);
+            }
+
+            @Override
+            public void cancel() {
+                subscription.cancel();
+            }
+        });
+
+        // Delivers the completion or error the publisher signalled before the
+        // subscriber, or while it was being subscribed.
+        final boolean terminated;
+        final Throwable failure;
+        synchronized (this) {
+            this.subscribed = true;
+            terminated = this.terminated;
+            failure = this.failure;
+        }
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else if (terminated) {
+            subscriber.onComplete();
+        }
+    }
+
+    private void addOutstanding(long n) {
+        long current;
+        long next;
+        do {
+            current = this.outstanding.get();
+            next = current + n;
+            if (next < 0) {
+                next = Long.MAX_VALUE;
+            }
+        } while (!this.outstanding.compareAndSet(current, next));
+    }
+
+    /**
+     * Gets the vector of the next item.
+     *
+     * @return the CV of the next item.
+     */
+    private CorrelationVector nextVector() {
+
+        if (this.blockRemaining == 0) {
+            int blockSize = this.batchedDemand ? (int) Math.max(1, Math.min(this.outstanding.get(), MAX_BLOCK_SIZE))
+                    : 1;
+            final CorrelationVector.Segment segment = this.parent.segment();
+            int first = this.parent.reserve(segment, blockSize);
+            if (first < 0 && blockSize > 1) {
+                // Near the maximum length, fall back to reserving one increment at a time.
+                blockSize = 1;
+                first = this.parent.reserve(segment, blockSize);
+            }
+            if (first < 0) {
+                // The parent can not be incremented any further; let increment()
+                // reset or terminate it and stamp the item with the resulting value.
+                final CorrelationVectorFactory factory = this.parent.getFactory();
+                final String value = this.parent.increment();
+                if (this.mode == Mode.Extend) {
+                    return factory.extend(value);
+                }
+                final CorrelationVector parsed = factory.parse(value);
+                return parsed.isImmutable() ? parsed
+                        : new ItemVector(factory, parsed.segment(), parsed.getVersion());
+            }
+            this.blockBase = segment.base;
+            this.nextExtension = first;
+            this.blockRemaining = blockSize;
+        }
+
+        final int extension = this.nextExtension++;
+        this.blockRemaining--;
+
+        final CorrelationVectorFactory factory = this.parent.getFactory();
+        if (this.mode == Mode.Extend) {
+            return factory.extend(this.blockBase + CorrelationVector.CV_DELIMITER + extension);
+        }
+        return new ItemVector(factory, new CorrelationVector.Segment(this.blockBase, extension,
+                this.parent.getVersion()), this.parent.getVersion());
+    }
+
+    /**
+     * Vector of an item in {@link Mode#Increment} mode, which can not be
+     * incremented: its next extension is the vector of the next item.
+     */
+    private static final class ItemVector extends CorrelationVector {
+
+        ItemVector(CorrelationVectorFactory factory, Segment segment, CorrelationVectorVersion version) {
+            super(factory, segment, version, false);
+        }
+
+        @Override
+        public String increment() {
+            return this.getValue();
+        }
+
+        @Override
+        int reserve(Segment segment, int count) {
+            return -1;
+        }
+    }
+}
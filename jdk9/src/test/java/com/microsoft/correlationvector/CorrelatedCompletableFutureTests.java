@@ -0,0 +1,64 @@
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelatedCompletableFutureTests {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void asyncStagesRunWithChildrenOfTheCreatingVector() throws Exception {
+        final CorrelationVector parent = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        final CompletableFuture<String> future;
+        final CorrelatedCompletableFuture<String> first;
+
+        final long token = CorrelationContext.attach(parent);
+        try {
+            first = CorrelatedCompletableFuture.supplyAsync(CorrelatedCompletableFutureTests::currentValue,
+                    this.executor);
+            future = first.thenApplyAsync(value -> value + " " + currentValue());
+        } finally {
+            CorrelationContext.detach(token);
+        }
+
+        Assert.assertSame(parent, first.getParent());
+        Assert.assertTrue(future instanceof CorrelatedCompletableFuture);
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1.0 tul4NUsfs9Cl7mOf.1.2.0", future.get());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2", parent.getValue());
+    }
+
+    @Test
+    public void futuresCreatedWithoutVectorRunWithoutVector() throws Exception {
+        final CorrelatedCompletableFuture<Void> future = CorrelatedCompletableFuture.runAsync(
+                () -> Assert.assertNull(CorrelationContext.current()), this.executor);
+        future.get();
+        Assert.assertNull(future.getParent());
+
+        final CorrelatedCompletableFuture<String> failed = CorrelatedCompletableFuture.supplyAsync(() -> {
+            throw new IllegalStateException("failed");
+        }, this.executor);
+        try {
+            failed.get();
+            Assert.fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static String currentValue() {
+        final CorrelationVector current = CorrelationContext.current();
+        return current == null ? null : current.getValue();
+    }
+}
@@ -0,0 +1,177 @@
+package com.microsoft.correlationvector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationVectorProcessorTests {
+
+    @Test
+    public void incrementModeStampsFixedIncrementsOfTheParent() {
+        final CorrelationVector parent = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        final Items items = stamp(parent, CorrelationVectorProcessor.Mode.Increment, false, 3, 3);
+
+        Assert.assertEquals("[tul4NUsfs9Cl7mOf.1.1, tul4NUsfs9Cl7mOf.1.2, tul4NUsfs9Cl7mOf.1.3]",
+                items.values().toString());
+        final CorrelationVector first = items.received.get(0).getCorrelationVector();
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1", first.increment());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1", first.getValue());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.4", parent.increment());
+    }
+
+    @Test
+    public void extendModeStampsExtendedIncrementsOfTheParent() {
+        final CorrelationVector parent = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        final Items items = stamp(parent, CorrelationVectorProcessor.Mode.Extend, false, 2, 2);
+
+        Assert.assertEquals("[tul4NUsfs9Cl7mOf.1.1.0, tul4NUsfs9Cl7mOf.1.2.0]", items.values().toString());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1.1", items.received.get(0).getCorrelationVector().increment());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.3", parent.increment());
+    }
+
+    @Test
+    public void batchedDemandReservesABlockForTheOutstandingDemand() {
+        final CorrelationVector parent = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        final Items items = stamp(parent, CorrelationVectorProcessor.Mode.Increment, true, 10, 3);
+
+        Assert.assertEquals("[tul4NUsfs9Cl7mOf.1.1, tul4NUsfs9Cl7mOf.1.2, tul4NUsfs9Cl7mOf.1.3]",
+                items.values().toString());
+        // The increments reserved for the items that never arrived are skipped.
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.11", parent.increment());
+    }
+
+    @Test
+    public void completionAndCancellationAreForwarded() {
+        final Publisher publisher = new Publisher();
+        final CorrelationVectorProcessor<Integer> processor = new CorrelationVectorProcessor<>(
+                new CorrelationVector(), CorrelationVectorProcessor.Mode.Increment, true);
+        final Items items = new Items(1);
+        publisher.subscribe(processor);
+        processor.subscribe(items);
+
+        Assert.assertEquals(1, publisher.requested);
+        items.subscription.cancel();
+        Assert.assertTrue(publisher.cancelled);
+
+        publisher.subscriber.onComplete();
+        Assert.assertTrue(items.completed);
+    }
+
+    @Test
+    public void completionBeforeTheSubscriberIsDeliveredOnSubscribe() {
+        final Publisher publisher = new Publisher();
+        final CorrelationVectorProcessor<Integer> processor = new CorrelationVectorProcessor<>(
+                new CorrelationVector(), CorrelationVectorProcessor.Mode.Increment, false);
+        publisher.subscribe(processor);
+        publisher.subscriber.onComplete();
+
+        final Items items = new Items(1);
+        processor.subscribe(items);
+        Assert.assertNotNull(items.subscription);
+        Assert.assertTrue(items.completed);
+
+        final CorrelationVectorProcessor<Integer> failed = new CorrelationVectorProcessor<>(
+                new CorrelationVector(), CorrelationVectorProcessor.Mode.Increment, false);
+        publisher.subscribe(failed);
+        final IllegalStateException failure = new IllegalStateException();
+        publisher.subscriber.onError(failure);
+        final Items failedItems = new Items(1);
+        failed.subscribe(failedItems);
+        Assert.assertSame(failure, failedItems.failure);
+    }
+
+    @Test
+    public void secondSubscriberIsRejected() {
+        final CorrelationVectorProcessor<Integer> processor = new CorrelationVectorProcessor<>(
+                new CorrelationVector(), CorrelationVectorProcessor.Mode.Increment, false);
+        processor.subscribe(new Items(1));
+        final Items second = new Items(1);
+        processor.subscribe(second);
+
+        Assert.assertTrue(second.failure instanceof IllegalStateException);
+    }
+
+    private static Items stamp(CorrelationVector parent, CorrelationVectorProcessor.Mode mode, boolean batched,
+            long demand, int count) {
+        final Publisher publisher = new Publisher();
+        final CorrelationVectorProcessor<Integer> processor = new CorrelationVectorProcessor<>(parent, mode,
+                batched);
+        final Items items = new Items(demand);
+        publisher.subscribe(processor);
+        processor.subscribe(items);
+        for (int i = 0; i < count; i++) {
+            publisher.subscriber.onNext(i);
+        }
+        publisher.subscriber.onComplete();
+        Assert.assertTrue(items.completed);
+        return items;
+    }
+
+    private static final class Publisher implements Flow.Publisher<Integer> {
+
+        Flow.Subscriber<? super Integer> subscriber;
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class Items implements Flow.Subscriber<CorrelatedItem<Integer>> {
+
+        final List<CorrelatedItem<Integer>> received = new ArrayList<>();
+        final long demand;
+        Flow.Subscription subscription;
+        Throwable failure;
+        boolean completed;
+
+        Items(long demand) {
+            this.demand = demand;
+        }
+
+        List<String> values() {
+            final List<String> values = new ArrayList<>();
+            for (final CorrelatedItem<Integer> item : this.received) {
+                values.add(item.getCorrelationVector().getValue());
+            }
+            return values;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.demand);
+        }
+
+        @Override
+        public void onNext(CorrelatedItem<Integer> item) {
+            this.received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.failure = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+        }
+    }
+}
@@ -14,7 +14,10 @@ import java.nio.ByteBuffer;
  */
 public class Base64Encoder {
 
-    private static final String BASE64_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final char[] BASE64_TABLE = { 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+            'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h',
+            'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2',
+            '3', '4', '5', '6', '7', '8', '9', '+', '/' };
 
     /**
      * Encodes the given byte buffer into base64 string.
@@ -25,39 +28,48 @@ public class Base64Encoder {
      */
     public static String toBase64String(ByteBuffer bytes) {
         final int len = bytes.capacity();
-        final int outputLength = (int) Math.ceil((len * 8) / 6.0);
-        final char[] sb = new char[outputLength];
-        final byte[] buffer = new byte[3];
+        final byte[] input = new byte[len];
+        for (int i = 0; i < len; i++) {
+            input[i] = bytes.get(i);
+        }
+        return toBase64String(input, len);
+    }
 
-        for (int i = 0, j = 0; i < len;) {
-            buffer[i % 3] = bytes.get(i);
-            ++i;
-            if ((i % 3) == 0) {
-                sb[j] = BASE64_TABLE.charAt((buffer[0] & 0xFC) >> 2);
-                sb[j + 1] = BASE64_TABLE.charAt(((buffer[0] & 0x03) << 4) + ((buffer[1] & 0xF0) >> 4));
-                sb[j + 2] = BASE64_TABLE.charAt(((buffer[1] & 0x0F) << 2) + ((buffer[2] & 0xC0) >> 6));
-                sb[j + 3] = BASE64_TABLE.charAt(buffer[2] & 0x3F);
-                j += 4;
-            }
+    /**
+     * Encodes the first bytes of the given array into a base64 string without
+     * padding.
+     *
+     * @param bytes
+     *            the bytes to encode.
+     * @param len
+     *            the number of bytes to encode.
+     * @return base64 string.
+     */
+    static String toBase64String(byte[] bytes, int len) {
+        final char[] output = new char[(len * 8 + 5) / 6];
+        final int fullGroups = len / 3;
+        int j = 0;
+        for (int i = 0; i < fullGroups * 3; i += 3) {
+            final int group = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            output[j] = BASE64_TABLE[group >>> 18];
+            output[j + 1] = BASE64_TABLE[(group >>> 12) & 0x3F];
+            output[j + 2] = BASE64_TABLE[(group >>> 6) & 0x3F];
+            output[j + 3] = BASE64_TABLE[group & 0x3F];
+            j += 4;
         }
 
+        // Remaining Bytes can only be 1 or 2
         final int remainingBytes = len % 3;
         if (remainingBytes > 0) {
-            for (int i = remainingBytes; i < 3; ++i) {
-                buffer[i] = '\0';
-            }
-
-            // Remaining Bytes can only be 1 or 2
-            if (remainingBytes == 1) {
-                sb[outputLength - 2] = BASE64_TABLE.charAt((buffer[0] & 0xFC) >> 2);
-                sb[outputLength - 1] = BASE64_TABLE.charAt((buffer[0] & 0x03) << 4);
-            } else {
-                sb[outputLength - 3] = BASE64_TABLE.charAt((buffer[0] & 0xFC) >> 2);
-                sb[outputLength - 2] = BASE64_TABLE.charAt(((buffer[0] & 0x03) << 4) + ((buffer[1] & 0xF0) >> 4));
-                sb[outputLength - 1] = BASE64_TABLE.charAt((buffer[1] & 0x0F) << 2);
+            final int first = bytes[len - remainingBytes] & 0xFF;
+            final int second = remainingBytes == 2 ? bytes[len - 1] & 0xFF : 0;
+            output[j] = BASE64_TABLE[first >>> 2];
+            output[j + 1] = BASE64_TABLE[((first & 0x03) << 4) | (second >>> 4)];
+            if (remainingBytes == 2) {
+                output[j + 2] = BASE64_TABLE[(second & 0x0F) << 2];
             }
         }
 
-        return new String(sb);
+        return new String(output);
     }
 }
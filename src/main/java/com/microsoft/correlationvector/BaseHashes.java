@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Hashes the base of a correlation vector from its decoded base64 bits. The
+ * sampler, the partitioner and the filter all hash bases here, so that the same
+ * base gets the same hash whether it is read from characters or from ASCII
+ * bytes.
+ */
+final class BaseHashes {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int CHARS_PER_WORD = 10;
+
+    /**
+     * 6-bit value of each ASCII character: its base64 value for the characters of
+     * the alphabet, its low 6 bits otherwise.
+     */
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; i++) {
+            BASE64_VALUES[i] = (byte) (i & 0x3F);
+        }
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private BaseHashes() {
+    }
+
+    /**
+     * Hashes the first characters of the given value. The characters are decoded
+     * to their 6 bits, packed in words of {@value #CHARS_PER_WORD} characters and
+     * mixed in, followed by the number of characters.
+     *
+     * @param value
+     *            the CV in string, or its base.
+     * @param length
+     *            the length of the base, e.g. from
+     *            {@link #baseLength(CharSequence)}.
+     * @return the hash of the base.
+     */
+    static long hash(CharSequence value, int length) {
+        long hash = GOLDEN_GAMMA;
+        long word = 0;
+        int chars = 0;
+        for (int i = 0; i < length; i++) {
+            word = (word << 6) | base64Value(value.charAt(i));
+            if (++chars == CHARS_PER_WORD) {
+                hash = CorrelationSampler.mix(hash ^ word);
+                word = 0;
+                chars = 0;
+            }
+        }
+        return CorrelationSampler.mix(hash ^ word ^ ((long) length << 58));
+    }
+
+    /**
+     * Hashes the given ASCII bytes as {@link #hash(CharSequence, int)} hashes
+     * the same characters.
+     *
+     * @param value
+     *            the ASCII bytes of the CV, or of its base.
+     * @param offset
+     *            the index of the first byte of the base.
+     * @param length
+     *            the length of the base, e.g. from
+     *            {@link #baseLength(byte[], int, int)}.
+     * @return the hash of the base.
+     */
+    static long hash(byte[] value, int offset, int length) {
+        long hash = GOLDEN_GAMMA;
+        long word = 0;
+        int chars = 0;
+        for (int i = offset; i < offset + length; i++) {
+            word = (word << 6) | base64Value(value[i] & 0xFF);
+            if (++chars == CHARS_PER_WORD) {
+                hash = CorrelationSampler.mix(hash ^ word);
+                word = 0;
+                chars = 0;
+            }
+        }
+        return CorrelationSampler.mix(hash ^ word ^ ((long) length << 58));
+    }
+
+    /**
+     * Gets the length of the first element of the given value, up to the first
+     * delimiter or terminator.
+     *
+     * @param value
+     *            the CV in string, or its base.
+     * @return the length of the base.
+     */
+    static int baseLength(CharSequence value) {
+        if (value instanceof String) {
+            final String string = (String) value;
+            final int delimiter = string.indexOf(CorrelationVector.CV_DELIMITER);
+            if (delimiter >= 0) {
+                return delimiter;
+            }
+        }
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == CorrelationVector.CV_DELIMITER || c == CorrelationVector.CV_TERMINATOR) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Gets the length of the first element of the given ASCII bytes, up to the
+     * first delimiter or terminator.
+     *
+     * @param value
+     *            the ASCII bytes of the CV, or of its base.
+     * @param offset
+     *            the index of the first byte of the CV.
+     * @param length
+     *            the number of bytes of the CV.
+     * @return the length of the base.
+     */
+    static int baseLength(byte[] value, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (value[i] == CorrelationVector.CV_DELIMITER || value[i] == CorrelationVector.CV_TERMINATOR) {
+                return i - offset;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Gets the 6-bit value of the given base character.
+     */
+    private static int base64Value(int c) {
+        return c < BASE64_VALUES.length ? BASE64_VALUES[c] : (c & 0x3F);
+    }
+}
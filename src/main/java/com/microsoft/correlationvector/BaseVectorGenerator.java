@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Generates the unique base value of a new correlation vector.
+ */
+public interface BaseVectorGenerator {
+
+    /**
+     * Generates a unique base64 string for the given CV version. The returned
+     * value must be 16 characters long for V1 and 22 characters long for V2.
+     *
+     * @param version
+     *            CV version.
+     * @return A unique base64 string.
+     */
+    String generateBase(CorrelationVectorVersion version);
+}
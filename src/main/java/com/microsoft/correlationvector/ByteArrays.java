@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Reads words from byte arrays. This version assembles the bytes one at a
+ * time; the Java 9 version of this class reads them with a single load through
+ * a byte array view {@code VarHandle}.
+ */
+final class ByteArrays {
+
+    private ByteArrays() {
+    }
+
+    /**
+     * Reads the eight bytes at the given index in little-endian order.
+     *
+     * @param bytes
+     *            the array.
+     * @param index
+     *            the index of the first byte.
+     * @return the bytes, the first one in the lowest bits.
+     */
+    static long getLongLittleEndian(byte[] bytes, int index) {
+        return (bytes[index] & 0xFFL) | (bytes[index + 1] & 0xFFL) << 8 | (bytes[index + 2] & 0xFFL) << 16
+                | (bytes[index + 3] & 0xFFL) << 24 | (bytes[index + 4] & 0xFFL) << 32
+                | (bytes[index + 5] & 0xFFL) << 40 | (bytes[index + 6] & 0xFFL) << 48
+                | (bytes[index + 7] & 0xFFL) << 56;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Metrics sink that forwards each notification to several sinks, in order, so
+ * that a factory can feed e.g. both counters and a recorder.
+ */
+public final class CompositeCorrelationVectorMetrics implements CorrelationVectorMetrics {
+
+    private final CorrelationVectorMetrics[] sinks;
+
+    /**
+     * Creates a sink forwarding to the given sinks.
+     *
+     * @param sinks
+     *            the sinks to notify.
+     */
+    public CompositeCorrelationVectorMetrics(CorrelationVectorMetrics... sinks) {
+        if (sinks == null) {
+            throw new IllegalArgumentException("sinks can not be null");
+        }
+        for (final CorrelationVectorMetrics sink : sinks) {
+            if (sink == null) {
+                throw new IllegalArgumentException("sinks can not contain null");
+            }
+        }
+        this.sinks = sinks.clone();
+    }
+
+    @Override
+    public void onBaseGenerated(CorrelationVectorVersion version) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onBaseGenerated(version);
+        }
+    }
+
+    @Override
+    public void onParse(CorrelationVector correlationVector) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onParse(correlationVector);
+        }
+    }
+
+    @Override
+    public void onParseFailure(String correlationVector) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onParseFailure(correlationVector);
+        }
+    }
+
+    @Override
+    public void onExtend(CorrelationVector correlationVector) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onExtend(correlationVector);
+        }
+    }
+
+    @Override
+    public void onSpin(CorrelationVector correlationVector) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onSpin(correlationVector);
+        }
+    }
+
+    @Override
+    public void onIncrement(CorrelationVector correlationVector, String value) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onIncrement(correlationVector, value);
+        }
+    }
+
+    @Override
+    public void onTerminate(CorrelationVector correlationVector) {
+        for (final CorrelationVectorMetrics sink : this.sinks) {
+            sink.onTerminate(correlationVector);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that propagates the current correlation vector to the tasks it runs.
+ * Each task submitted while a vector is current runs with its own child of that
+ * vector, obtained by incrementing it at submit time.
+ */
+public class CorrelatedExecutor implements Executor {
+
+    private final Executor delegate;
+    private final CorrelationVector parent;
+
+    /**
+     * Creates an executor that runs the tasks on the given executor.
+     *
+     * @param delegate
+     *            the executor running the tasks.
+     */
+    public CorrelatedExecutor(Executor delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * Creates an executor that runs the tasks on the given executor with children
+     * of the given vector, or of the current vector if it is null.
+     *
+     * @param delegate
+     *            the executor running the tasks.
+     * @param parent
+     *            the parent CV of all tasks, or null.
+     */
+    CorrelatedExecutor(Executor delegate, CorrelationVector parent) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate can not be null");
+        }
+        this.delegate = delegate;
+        this.parent = parent;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.delegate.execute(CorrelatedTasks.wrap(this.parent(), command));
+    }
+
+    /**
+     * Gets the parent vector of a task submitted now.
+     *
+     * @return the parent CV, or null if there is none.
+     */
+    CorrelationVector parent() {
+        return this.parent != null ? this.parent : CorrelationContext.current();
+    }
+}
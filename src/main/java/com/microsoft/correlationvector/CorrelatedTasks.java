@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Wraps tasks so that they run with a child of the correlation vector that was
+ * current when they were submitted.
+ */
+final class CorrelatedTasks {
+
+    private CorrelatedTasks() {
+    }
+
+    /**
+     * Wraps the task so that it runs with a child of the given parent vector. The
+     * task is returned as is when there is no parent vector.
+     *
+     * @param parent
+     *            the parent CV, or null.
+     * @param task
+     *            the task to wrap.
+     * @return the wrapped task.
+     */
+    static Runnable wrap(CorrelationVector parent, Runnable task) {
+        if (parent == null) {
+            return task;
+        }
+        return new CorrelatedRunnable(parent.createChild(), task);
+    }
+
+    /**
+     * Wraps the task so that it runs with a child of the given parent vector. The
+     * task is returned as is when there is no parent vector.
+     *
+     * @param parent
+     *            the parent CV, or null.
+     * @param task
+     *            the task to wrap.
+     * @return the wrapped task.
+     */
+    static <T> Callable<T> wrap(CorrelationVector parent, Callable<T> task) {
+        if (parent == null) {
+            return task;
+        }
+        return new CorrelatedCallable<T>(parent.createChild(), task);
+    }
+
+    /**
+     * Wraps each task so that it runs with its own child of the given parent
+     * vector.
+     *
+     * @param parent
+     *            the parent CV, or null.
+     * @param tasks
+     *            the tasks to wrap.
+     * @return the wrapped tasks.
+     */
+    static <T> Collection<Callable<T>> wrapAll(CorrelationVector parent, Collection<? extends Callable<T>> tasks) {
+        final List<Callable<T>> wrapped = new ArrayList<Callable<T>>(tasks.size());
+        for (final Callable<T> task : tasks) {
+            wrapped.add(wrap(parent, task));
+        }
+        return wrapped;
+    }
+
+    private static final class CorrelatedRunnable implements Runnable {
+
+        private final CorrelationVector correlationVector;
+        private final Runnable task;
+
+        CorrelatedRunnable(CorrelationVector correlationVector, Runnable task) {
+            this.correlationVector = correlationVector;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            CorrelationContext.with(this.correlationVector, this.task);
+        }
+    }
+
+    private static final class CorrelatedCallable<T> implements Callable<T> {
+
+        private final CorrelationVector correlationVector;
+        private final Callable<T> task;
+
+        CorrelatedCallable(CorrelationVector correlationVector, Callable<T> task) {
+            this.correlationVector = correlationVector;
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            final long token = CorrelationContext.attach(this.correlationVector);
+            final T result;
+            try {
+                result = this.task.call();
+            } catch (Exception | Error e) {
+                CorrelationContext.detach(token, e);
+                throw e;
+            }
+            CorrelationContext.detach(token);
+            return result;
+        }
+    }
+}
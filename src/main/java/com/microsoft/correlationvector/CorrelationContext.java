@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.Arrays;
+
+/**
+ * Holds the correlation vector of the operation running on the current thread.
+ * <p/>
+ * A vector is made current either for the duration of a task, with
+ * {@link #with(CorrelationVector, Runnable)} or
+ * {@link #withExtended(String, Runnable)}, or explicitly with
+ * {@link #attach(CorrelationVector)} and {@link #detach(long)}:
+ *
+ * <pre>
+ * final long token = CorrelationContext.attach(cv);
+ * try {
+ *     ...
+ * } finally {
+ *     CorrelationContext.detach(token);
+ * }
+ * </pre>
+ *
+ * Attaching, detaching and reading the current vector do not allocate once the
+ * calling thread has been used, and a thread never keeps a reference to a
+ * vector after its outermost scope ends, so pooled threads do not leak vectors
+ * from one task to the next.
+ */
+public final class CorrelationContext {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private static final ThreadLocal<Scopes> SCOPES = new ThreadLocal<Scopes>() {
+        @Override
+        protected Scopes initialValue() {
+            return new Scopes();
+        }
+    };
+
+    private CorrelationContext() {
+    }
+
+    /**
+     * Gets the correlation vector of the current thread.
+     *
+     * @return the current CV, or null if no CV is attached.
+     */
+    public static CorrelationVector current() {
+        return SCOPES.get().current();
+    }
+
+    /**
+     * Makes the given correlation vector current until the returned token is
+     * passed to {@link #detach(long)}. Tokens must be detached in the reverse
+     * order of their attachment, on the thread that attached them. A token is
+     * only valid once: it is never returned again by the thread, even at the
+     * same depth.
+     *
+     * @param correlationVector
+     *            the CV to make current.
+     * @return the token to detach.
+     */
+    public static long attach(CorrelationVector correlationVector) {
+        return SCOPES.get().push(correlationVector);
+    }
+
+    /**
+     * Restores the correlation vector that was current before the given token was
+     * attached. Scopes attached after the token and not yet detached are
+     * discarded.
+     *
+     * @param token
+     *            the token returned by {@link #attach(CorrelationVector)}.
+     * @throws IllegalStateException
+     *             if the token was already detached or scopes attached after it
+     *             were not detached.
+     */
+    public static void detach(long token) {
+        SCOPES.get().pop(token);
+    }
+
+    /**
+     * Detaches the given token after the task of its scope failed. A failure to
+     * detach is added to the suppressed exceptions of the task failure rather
+     * than replacing it.
+     *
+     * @param token
+     *            the token returned by {@link #attach(CorrelationVector)}.
+     * @param failure
+     *            the failure of the task.
+     */
+    static void detach(long token, Throwable failure) {
+        try {
+            SCOPES.get().pop(token);
+        } catch (IllegalStateException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Runs the task with the given correlation vector current.
+     *
+     * @param correlationVector
+     *            the CV to make current.
+     * @param task
+     *            the task to run.
+     */
+    public static void with(CorrelationVector correlationVector, Runnable task) {
+        final Scopes scopes = SCOPES.get();
+        final long token = scopes.push(correlationVector);
+        try {
+            task.run();
+        } catch (RuntimeException | Error e) {
+            detach(token, e);
+            throw e;
+        }
+        scopes.pop(token);
+    }
+
+    /**
+     * Runs the task with the given header value extended by the default factory
+     * as the current correlation vector. A new vector is created when the header
+     * is missing.
+     *
+     * @param header
+     *            the value of the CV header of the incoming message.
+     * @param task
+     *            the task to run.
+     */
+    public static void withExtended(String header, Runnable task) {
+        withExtended(CorrelationVectorFactory.getDefault(), header, task);
+    }
+
+    /**
+     * Runs the task with the given header value extended by the given factory as
+     * the current correlation vector. A new vector is created when the header is
+     * missing.
+     *
+     * @param factory
+     *            the factory used to extend the header.
+     * @param header
+     *            the value of the CV header of the incoming message.
+     * @param task
+     *            the task to run.
+     */
+    public static void withExtended(CorrelationVectorFactory factory, String header, Runnable task) {
+        final CorrelationVector correlationVector = (header == null || header.isEmpty()) ? factory.create()
+                : factory.extend(header);
+        with(correlationVector, task);
+    }
+
+    /**
+     * Stack of the vectors attached to one thread. A token holds the depth of
+     * its scope in its low 32 bits and the number of the attachment on the
+     * thread in its high 32 bits, so a detached token does not match a scope
+     * attached later at the same depth.
+     */
+    private static final class Scopes {
+
+        private CorrelationVector[] stack = new CorrelationVector[INITIAL_DEPTH];
+        private long[] tokens = new long[INITIAL_DEPTH];
+        private int depth;
+        private int attachments;
+
+        CorrelationVector current() {
+            return this.depth == 0 ? null : this.stack[this.depth - 1];
+        }
+
+        long push(CorrelationVector correlationVector) {
+            if (this.depth == this.stack.length) {
+                this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+                this.tokens = Arrays.copyOf(this.tokens, this.tokens.length * 2);
+            }
+            final long token = (long) ++this.attachments << 32 | this.depth;
+            this.stack[this.depth] = correlationVector;
+            this.tokens[this.depth] = token;
+            this.depth++;
+            return token;
+        }
+
+        void pop(long token) {
+            final int index = (int) token;
+            if (index < 0 || index >= this.depth || this.tokens[index] != token) {
+                throw new IllegalStateException("Correlation context token " + token + " is not attached");
+            }
+
+            final int attachedDepth = this.depth;
+            for (int i = index; i < attachedDepth; i++) {
+                this.stack[i] = null;
+            }
+            this.depth = index;
+
+            if (attachedDepth != index + 1) {
+                throw new IllegalStateException("Correlation context token " + token + " detached before "
+                        + (attachedDepth - index - 1) + " scope(s) attached after it");
+            }
+        }
+    }
+}
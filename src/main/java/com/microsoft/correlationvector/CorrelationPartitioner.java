@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Assigns correlation vectors to partitions by their base, so that all the
+ * events of one request land on the same partition, e.g. to shard logs for
+ * rebuilding the tree of operations of each request.
+ * <p/>
+ * The partition depends only on the first element of the vector, hashed from
+ * its decoded base64 bits as by {@link CorrelationSampler#hash(CharSequence)},
+ * straight from the characters or bytes of a header without parsing it. The
+ * hash is mapped to a partition with the jump consistent hash of Lamping and
+ * Veach: the partitions are balanced, and growing from n to n + 1 partitions
+ * only moves 1/(n + 1) of the bases, all to the new partition.
+ */
+public final class CorrelationPartitioner {
+
+    private final int partitions;
+
+    private CorrelationPartitioner(int partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * Creates a partitioner for the given number of partitions.
+     *
+     * @param partitions
+     *            the number of partitions.
+     * @return a new partitioner.
+     */
+    public static CorrelationPartitioner ofPartitions(int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        return new CorrelationPartitioner(partitions);
+    }
+
+    /**
+     * Maps the given hash to a partition with the jump consistent hash.
+     *
+     * @param hash
+     *            the hash of a base, e.g. from
+     *            {@link CorrelationSampler#hash(CharSequence)}.
+     * @param partitions
+     *            the number of partitions.
+     * @return the partition, between 0 and partitions - 1.
+     */
+    public static int partition(long hash, int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        long key = hash;
+        long bucket = -1;
+        long next = 0;
+        while (next < partitions) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    /**
+     * Gets a partitioner for the given number of partitions, moving as few
+     * bases as possible from the partitions of this one.
+     *
+     * @param partitions
+     *            the new number of partitions.
+     * @return a partitioner.
+     */
+    public CorrelationPartitioner withPartitions(int partitions) {
+        return partitions == this.partitions ? this : ofPartitions(partitions);
+    }
+
+    /**
+     * Gets the number of partitions.
+     *
+     * @return the number of partitions.
+     */
+    public int getPartitions() {
+        return this.partitions;
+    }
+
+    /**
+     * Gets the partition of the given vector.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return the partition of the CV.
+     */
+    public int partition(CorrelationVector correlationVector) {
+        return partition(CorrelationSampler.hash(correlationVector), this.partitions);
+    }
+
+    /**
+     * Gets the partition of the given vector.
+     *
+     * @param correlationVector
+     *            CV in string, or its base.
+     * @return the partition of the CV.
+     */
+    public int partition(CharSequence correlationVector) {
+        return partition(BaseHashes.hash(correlationVector, BaseHashes.baseLength(correlationVector)),
+                this.partitions);
+    }
+
+    /**
+     * Gets the partition of the given vector.
+     *
+     * @param correlationVector
+     *            the ASCII bytes of the CV, or of its base.
+     * @param offset
+     *            the index of the first byte of the CV.
+     * @param length
+     *            the number of bytes of the CV.
+     * @return the partition of the CV.
+     */
+    public int partition(byte[] correlationVector, int offset, int length) {
+        return partition(BaseHashes.hash(correlationVector, offset,
+                BaseHashes.baseLength(correlationVector, offset, length)), this.partitions);
+    }
+}
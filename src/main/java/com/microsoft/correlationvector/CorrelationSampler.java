@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.Arrays;
+
+/**
+ * Makes sampling decisions derived from the base of correlation vectors, so
+ * that every service handling one request makes the same decision.
+ * <p/>
+ * The decision depends only on the first element of the vector, the base
+ * generated when the request entered the system, which is decoded from base64
+ * and hashed to 64 bits with a fixed function. It is identical across JVMs,
+ * versions of this library and services extending or spinning the vector. A
+ * sampler has one or more tiers of increasing rates: a vector sampled at a
+ * tier is sampled at all the following tiers, so a service keeping detailed
+ * telemetry for 1% of the requests and summaries for 10% of them keeps both
+ * for the same 1%.
+ */
+public final class CorrelationSampler {
+
+    private static final int HASH_BITS = 53;
+
+    private final double[] rates;
+    private final long[] thresholds;
+
+    private CorrelationSampler(double[] rates) {
+        this.rates = rates;
+        this.thresholds = new long[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            this.thresholds[i] = (long) (rates[i] * (1L << HASH_BITS));
+        }
+    }
+
+    /**
+     * Creates a sampler with a single tier.
+     *
+     * @param rate
+     *            the fraction of the vectors to sample, between 0 and 1.
+     * @return a new sampler.
+     */
+    public static CorrelationSampler ofRate(double rate) {
+        return ofTiers(rate);
+    }
+
+    /**
+     * Creates a sampler with the given tiers.
+     *
+     * @param rates
+     *            the fraction of the vectors sampled at each tier, between 0 and 1
+     *            and in ascending order.
+     * @return a new sampler.
+     */
+    public static CorrelationSampler ofTiers(double... rates) {
+        if (rates == null || rates.length == 0) {
+            throw new IllegalArgumentException("At least one sampling rate is required");
+        }
+        double previous = 0;
+        for (final double rate : rates) {
+            if (!(rate >= previous && rate <= 1)) {
+                throw new IllegalArgumentException(
+                        "Sampling rates must be between 0 and 1 and in ascending order: " + Arrays.toString(rates));
+            }
+            previous = rate;
+        }
+        return new CorrelationSampler(rates.clone());
+    }
+
+    /**
+     * Hashes the base of the given correlation vector.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return the hash of the first element of the CV.
+     */
+    public static long hash(CorrelationVector correlationVector) {
+        return hash(correlationVector.getBaseVector());
+    }
+
+    /**
+     * Hashes the first element of the given correlation vector value. The base64
+     * characters are decoded to their 6 bits and characters outside the base64
+     * alphabet are folded into 6 bits.
+     *
+     * @param correlationVector
+     *            CV in string, or its base.
+     * @return the hash of the first element of the CV.
+     */
+    public static long hash(CharSequence correlationVector) {
+        return BaseHashes.hash(correlationVector, BaseHashes.baseLength(correlationVector));
+    }
+
+    /**
+     * Hashes the first element of the given correlation vector value in ASCII
+     * bytes, e.g. straight from the bytes of a message header. The hash is the
+     * one of {@link #hash(CharSequence)}.
+     *
+     * @param correlationVector
+     *            the ASCII bytes of the CV, or of its base.
+     * @param offset
+     *            the index of the first byte of the CV.
+     * @param length
+     *            the number of bytes of the CV.
+     * @return the hash of the first element of the CV.
+     */
+    public static long hash(byte[] correlationVector, int offset, int length) {
+        return BaseHashes.hash(correlationVector, offset,
+                BaseHashes.baseLength(correlationVector, offset, length));
+    }
+
+    /**
+     * Gets the number of tiers of this sampler.
+     *
+     * @return the number of tiers.
+     */
+    public int getTierCount() {
+        return this.rates.length;
+    }
+
+    /**
+     * Gets the sampling rate of the given tier.
+     *
+     * @param tier
+     *            the index of the tier.
+     * @return the fraction of the vectors sampled at the tier.
+     */
+    public double getRate(int tier) {
+        return this.rates[tier];
+    }
+
+    /**
+     * Gets a value indicating whether the given vector is sampled at the last
+     * tier.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return true if the CV is sampled.
+     */
+    public boolean isSampled(CorrelationVector correlationVector) {
+        return this.getTier(correlationVector) < this.rates.length;
+    }
+
+    /**
+     * Gets a value indicating whether the given vector is sampled at the last
+     * tier.
+     *
+     * @param correlationVector
+     *            CV in string, or its base.
+     * @return true if the CV is sampled.
+     */
+    public boolean isSampled(CharSequence correlationVector) {
+        return this.getTier(correlationVector) < this.rates.length;
+    }
+
+    /**
+     * Gets the first tier at which the given vector is sampled.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return the index of the tier, or the number of tiers if the CV is not
+     *         sampled.
+     */
+    public int getTier(CorrelationVector correlationVector) {
+        return this.getTierOfHash(hash(correlationVector));
+    }
+
+    /**
+     * Gets the first tier at which the given vector is sampled.
+     *
+     * @param correlationVector
+     *            CV in string, or its base.
+     * @return the index of the tier, or the number of tiers if the CV is not
+     *         sampled.
+     */
+    public int getTier(CharSequence correlationVector) {
+        return this.getTierOfHash(hash(correlationVector));
+    }
+
+    private int getTierOfHash(long hash) {
+        final long value = hash >>> (Long.SIZE - HASH_BITS);
+        int tier = 0;
+        while (tier < this.thresholds.length && value >= this.thresholds[tier]) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * Finalizer of the SplitMix64 generator.
+     */
+    static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times outbound calls by the correlation vector of the child operation, i.e.
+ * the incremented vector sent with the call, without a tracing stack.
+ * <p/>
+ * {@link #start(CallSite, CorrelationVector)} increments the vector and
+ * records the start time under the hash of the child vector in a preallocated
+ * table of calls in flight; {@link #stop(CharSequence)} looks the child vector
+ * up when the call completes and records the duration into the log-linear
+ * histogram of the call site. Both are lock-free and allocate nothing besides
+ * the value of the child vector. Calls that are never stopped are counted as
+ * timed out by the next {@link #snapshot()} after the timeout.
+ */
+public final class CorrelationTimer {
+
+    private static final long EMPTY = 0;
+    private static final long REMOVED = 2;
+    private static final long CLAIMED = 4;
+    private static final int MAX_PROBES = 32;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray starts;
+    private final AtomicIntegerArray callSites;
+    private final int mask;
+    private final long timeoutNanos;
+
+    private final StripedCounter timedOut = new StripedCounter();
+    private final StripedCounter dropped = new StripedCounter();
+
+    private volatile CallSite[] sites = new CallSite[0];
+
+    /**
+     * Creates a new builder initialized with the default configuration.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private CorrelationTimer(Builder builder) {
+        this.keys = new AtomicLongArray(builder.capacity);
+        this.starts = new AtomicLongArray(builder.capacity);
+        this.callSites = new AtomicIntegerArray(builder.capacity);
+        this.mask = builder.capacity - 1;
+        this.timeoutNanos = builder.timeoutNanos;
+    }
+
+    /**
+     * Gets the call site of the given name, creating it and its histogram on
+     * first use. Get the call sites once, e.g. in a static field, not for each
+     * call.
+     *
+     * @param name
+     *            the name of the call site, e.g. the called service.
+     * @return the call site.
+     */
+    public synchronized CallSite callSite(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name can not be null or empty");
+        }
+        for (final CallSite site : this.sites) {
+            if (site.name.equals(name)) {
+                return site;
+            }
+        }
+        final CallSite site = new CallSite(name, this.sites.length);
+        final CallSite[] sites = Arrays.copyOf(this.sites, this.sites.length + 1);
+        sites[site.index] = site;
+        this.sites = sites;
+        return site;
+    }
+
+    /**
+     * Increments the given vector and starts timing the call of the child
+     * vector. Calls of a terminated vector are not timed and counted as dropped,
+     * as they all send the same value.
+     *
+     * @param callSite
+     *            the call site.
+     * @param parent
+     *            the CV of the current operation.
+     * @return the value of the child vector, to send with the call.
+     */
+    public String start(CallSite callSite, CorrelationVector parent) {
+        final String child = parent.increment();
+        if (parent.isImmutable()) {
+            this.dropped.increment();
+        } else {
+            this.start(callSite, child);
+        }
+        return child;
+    }
+
+    /**
+     * Starts timing the call of the given child vector. A call whose vector is
+     * already in flight is not timed and counted as dropped.
+     *
+     * @param callSite
+     *            the call site.
+     * @param child
+     *            the value of the CV sent with the call.
+     */
+    public void start(CallSite callSite, CharSequence child) {
+        final long key = key(child);
+        int index = (int) key;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index++) {
+            final int slot = index & this.mask;
+            final long current = this.keys.get(slot);
+            if (current == key) {
+                break;
+            }
+            if ((current == EMPTY || current == REMOVED) && this.keys.compareAndSet(slot, current, CLAIMED)) {
+                // The slot is claimed until the key is set, so a concurrent sweep
+                // does not see the start of the previous call.
+                this.starts.set(slot, System.nanoTime());
+                this.callSites.set(slot, callSite.index);
+                this.keys.set(slot, key);
+                return;
+            }
+        }
+        this.dropped.increment();
+    }
+
+    /**
+     * Stops timing the call of the given child vector and records its duration.
+     *
+     * @param child
+     *            the value of the CV sent with the call.
+     * @return false if the call was not timed, e.g. because it timed out.
+     */
+    public boolean stop(CharSequence child) {
+        final long end = System.nanoTime();
+        final long key = key(child);
+        int index = (int) key;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index++) {
+            final int slot = index & this.mask;
+            final long current = this.keys.get(slot);
+            if (current == EMPTY) {
+                return false;
+            }
+            if (current == key) {
+                final long start = this.starts.get(slot);
+                final int site = this.callSites.get(slot);
+                if (this.keys.compareAndSet(slot, key, REMOVED)) {
+                    this.sites[site].histogram.record(end - start);
+                    return true;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes a snapshot of the durations recorded so far. The calls in flight for
+     * longer than the timeout are removed and counted as timed out. Take
+     * snapshots periodically, e.g. once a minute, and subtract the previous
+     * snapshot to get the durations of the period.
+     *
+     * @return the snapshot.
+     */
+    public CorrelationTimerSnapshot snapshot() {
+        this.sweep();
+        final CallSite[] sites = this.sites;
+        final Map<String, long[]> histograms = new LinkedHashMap<String, long[]>();
+        for (final CallSite site : sites) {
+            histograms.put(site.name, site.histogram.snapshot());
+        }
+        return new CorrelationTimerSnapshot(histograms, this.timedOut.sum(), this.dropped.sum());
+    }
+
+    private void sweep() {
+        final long now = System.nanoTime();
+        for (int slot = 0; slot <= this.mask; slot++) {
+            final long key = this.keys.get(slot);
+            if ((key & 1) != 0 && now - this.starts.get(slot) > this.timeoutNanos
+                    && this.keys.compareAndSet(slot, key, REMOVED)) {
+                this.timedOut.increment();
+            }
+        }
+    }
+
+    /**
+     * Hashes the child vector to an odd key, so that keys never collide with
+     * the states of the slots.
+     */
+    private static long key(CharSequence child) {
+        return CorrelationVectorFilter.hash(child, -1, false) | 1;
+    }
+
+    /**
+     * Call site of a {@link CorrelationTimer}, with its histogram of durations.
+     */
+    public static final class CallSite {
+
+        private final String name;
+        private final int index;
+        private final StripedLatencyHistogram histogram = new StripedLatencyHistogram();
+
+        private CallSite(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        /**
+         * Gets the name of the call site.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    /**
+     * Builder of {@link CorrelationTimer}.
+     */
+    public static final class Builder {
+
+        private int capacity = 1 << 16;
+        private long timeoutNanos = TimeUnit.MINUTES.toNanos(1);
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of slots of the table of calls in flight, rounded up to a
+         * power of two. Calls started while the table is nearly full are not
+         * timed. Defaults to 65536.
+         *
+         * @param value
+         *            number of slots.
+         * @return this builder.
+         */
+        public Builder capacity(int value) {
+            if (value <= 0 || value > (1 << 24)) {
+                throw new IllegalArgumentException("capacity must be between 1 and " + (1 << 24));
+            }
+            this.capacity = value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+            return this;
+        }
+
+        /**
+         * Sets how long a call can be in flight before it is counted as timed out.
+         * Defaults to 1 minute.
+         *
+         * @param value
+         *            timeout.
+         * @param unit
+         *            unit of the timeout.
+         * @return this builder.
+         */
+        public Builder timeout(long value, TimeUnit unit) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.timeoutNanos = unit.toNanos(value);
+            return this;
+        }
+
+        /**
+         * Creates a timer with the current configuration.
+         *
+         * @return a new timer.
+         */
+        public CorrelationTimer build() {
+            return new CorrelationTimer(this);
+        }
+    }
+}
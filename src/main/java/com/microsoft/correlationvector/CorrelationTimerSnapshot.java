@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durations recorded by a {@link CorrelationTimer} at a point in time.
+ * <p/>
+ * The durations of each call site are counted in log-linear buckets: each
+ * power of two of nanoseconds is split into 8 buckets, so durations are known
+ * within 12.5%.
+ */
+public final class CorrelationTimerSnapshot {
+
+    private final Map<String, long[]> histograms;
+    private final long timedOut;
+    private final long dropped;
+
+    CorrelationTimerSnapshot(Map<String, long[]> histograms, long timedOut, long dropped) {
+        this.histograms = histograms;
+        this.timedOut = timedOut;
+        this.dropped = dropped;
+    }
+
+    /**
+     * Gets the names of the call sites, in the order they were created.
+     *
+     * @return the call site names.
+     */
+    public Set<String> getCallSites() {
+        return Collections.unmodifiableSet(this.histograms.keySet());
+    }
+
+    /**
+     * Gets the number of calls of the given site that completed.
+     *
+     * @param callSite
+     *            the name of the call site.
+     * @return the number of completed calls.
+     */
+    public long getCount(String callSite) {
+        long count = 0;
+        for (final long bucket : this.histogram(callSite)) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the histogram of the durations of the given site. Index i counts the
+     * durations from {@link #getBucketLowerBound(int) getBucketLowerBound(i)}
+     * to getBucketLowerBound(i + 1) exclusive.
+     *
+     * @param callSite
+     *            the name of the call site.
+     * @return the duration histogram.
+     */
+    public long[] getHistogram(String callSite) {
+        return this.histogram(callSite).clone();
+    }
+
+    /**
+     * Gets the duration that the given fraction of the calls of the site did
+     * not exceed, rounded up to the end of its bucket.
+     *
+     * @param callSite
+     *            the name of the call site.
+     * @param fraction
+     *            the fraction of the calls, between 0 and 1, e.g. 0.99.
+     * @return the duration in nanoseconds, or 0 if no call completed.
+     */
+    public long getValueAtFraction(String callSite, double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+        final long[] histogram = this.histogram(callSite);
+        final long threshold = (long) Math.ceil(fraction * this.getCount(callSite));
+        long count = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+            if (count > 0 && count >= threshold) {
+                return i + 1 < histogram.length ? getBucketLowerBound(i + 1) - 1 : Long.MAX_VALUE;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of calls that were not completed within the timeout of
+     * the timer.
+     *
+     * @return timed out call count.
+     */
+    public long getTimedOutCount() {
+        return this.timedOut;
+    }
+
+    /**
+     * Gets the number of calls that were not timed because too many calls were
+     * in flight, or because their vector was terminated or already in flight.
+     *
+     * @return dropped call count.
+     */
+    public long getDroppedCount() {
+        return this.dropped;
+    }
+
+    /**
+     * Gets the smallest duration counted in the given bucket of the histograms.
+     *
+     * @param bucket
+     *            the index of the bucket.
+     * @return the duration in nanoseconds.
+     */
+    public static long getBucketLowerBound(int bucket) {
+        return StripedLatencyHistogram.lowerBound(bucket);
+    }
+
+    private long[] histogram(String callSite) {
+        final long[] histogram = this.histograms.get(callSite);
+        if (histogram == null) {
+            throw new IllegalArgumentException("Unknown call site: " + callSite);
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder value = new StringBuilder();
+        for (final String callSite : this.histograms.keySet()) {
+            value.append(callSite).append(": count=").append(this.getCount(callSite)).append(" p50=")
+                    .append(this.getValueAtFraction(callSite, 0.5)).append("ns p99=")
+                    .append(this.getValueAtFraction(callSite, 0.99)).append("ns, ");
+        }
+        return value.append("timedOut=").append(this.timedOut).append(" dropped=").append(this.dropped).toString();
+    }
+}
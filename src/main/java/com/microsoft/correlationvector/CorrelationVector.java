@@ -6,11 +6,11 @@
  */
 package com.microsoft.correlationvector;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * This class represents a lightweight vector for identifying and measuring
@@ -33,8 +33,13 @@ public class CorrelationVector {
     public static final char CV_TERMINATOR = '!';
     /**
      * Gets or sets a value indicating whether or not to validate the correlation
-     * vector on creation.
+     * vector on creation by the static factory methods of this class.
+     *
+     * @deprecated Build a {@link CorrelationVectorFactory} with
+     *             {@link CorrelationVectorFactory.Builder#validateDuringCreation(boolean)}
+     *             instead.
      */
+    @Deprecated
     public static boolean VALIDATE_CV_DURING_CREATION = false;
 
     private static final byte MAX_CV_LENGTH = 63;
@@ -42,13 +47,34 @@ public class CorrelationVector {
     private static final byte CV_BASE_LENGTH = 16;
     private static final byte CV_BASE_LENGTH_V2 = 22;
 
-    private static final Random rng = new Random();
+    private static final int[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+            1000000000 };
+    /**
+     * Tens and ones digits of the numbers 0 to 99, to render an extension two
+     * digits at a time.
+     */
+    private static final char[] DIGIT_TENS = new char[100];
+    private static final char[] DIGIT_ONES = new char[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (char) ('0' + i / 10);
+            DIGIT_ONES[i] = (char) ('0' + i % 10);
+        }
+    }
 
-    private final AtomicInteger extension;
+    private static final AtomicReferenceFieldUpdater<CorrelationVector, Segment> SEGMENT = AtomicReferenceFieldUpdater
+            .newUpdater(CorrelationVector.class, Segment.class, "segment");
+
+    /**
+     * The base vector and the current extension, replaced when the vector is
+     * reset.
+     */
+    private volatile Segment segment;
 
     private final CorrelationVectorVersion version;
 
-    private final String baseVector;
+    private final CorrelationVectorFactory factory;
     /**
      * Indicates whether the CV object is immutable.
      */
@@ -62,23 +88,7 @@ public class CorrelationVector {
      * @return A new correlation vector extended from the current vector.
      */
     public static CorrelationVector extend(String correlationVector) {
-
-        if (isImmutable(correlationVector)) {
-            return CorrelationVector.parse(correlationVector);
-        }
-
-        final CorrelationVectorVersion version = CorrelationVector.inferVersion(correlationVector,
-                CorrelationVector.VALIDATE_CV_DURING_CREATION);
-
-        if (CorrelationVector.VALIDATE_CV_DURING_CREATION) {
-            CorrelationVector.validate(correlationVector, version);
-        }
-
-        if (isOversized(correlationVector, 0, version)) {
-            return parse(correlationVector + CV_TERMINATOR);
-        } else {
-            return new CorrelationVector(correlationVector, 0, version, false);
-        }
+        return CorrelationVectorFactory.getDefault(VALIDATE_CV_DURING_CREATION).extend(correlationVector);
     }
 
     /**
@@ -89,29 +99,7 @@ public class CorrelationVector {
      * @return CV.
      */
     public static CorrelationVector parse(String correlationVector) {
-
-        if (!((correlationVector == null) || correlationVector.trim().isEmpty())) {
-            final int p = correlationVector.lastIndexOf(CV_DELIMITER);
-            final boolean isImmutable = isImmutable(correlationVector);
-
-            if (p > 0) {
-                final String extensionVal = isImmutable
-                        ? correlationVector.substring(p + 1, correlationVector.length() - 1)
-                        : correlationVector.substring(p + 1);
-                int extension = 0;
-                try {
-                    extension = Integer.parseInt(extensionVal);
-                } catch (NumberFormatException nfe) {
-                    return new CorrelationVector();
-                }
-                if (extension >= 0) {
-                    return new CorrelationVector(correlationVector.substring(0, p), extension,
-                            CorrelationVector.inferVersion(correlationVector, false), isImmutable);
-                }
-            }
-        }
-
-        return new CorrelationVector();
+        return CorrelationVectorFactory.getDefault(VALIDATE_CV_DURING_CREATION).parse(correlationVector);
     }
 
     /**
@@ -122,9 +110,7 @@ public class CorrelationVector {
      * @return A new correlation vector extended from the current vector.
      */
     public static CorrelationVector spin(String correlationVector) {
-
-        final SpinParameters defaultParameters = SpinParameters.getDefaultParameters();
-        return CorrelationVector.spin(correlationVector, defaultParameters);
+        return CorrelationVectorFactory.getDefault(VALIDATE_CV_DURING_CREATION).spin(correlationVector);
     }
 
     /**
@@ -138,42 +124,7 @@ public class CorrelationVector {
      * @return A new correlation vector extended from the current vector.
      */
     public static CorrelationVector spin(String correlationVector, SpinParameters parameters) {
-
-        if (isImmutable(correlationVector)) {
-            return parse(correlationVector);
-        }
-
-        final CorrelationVectorVersion version = CorrelationVector.inferVersion(correlationVector,
-                CorrelationVector.VALIDATE_CV_DURING_CREATION);
-
-        if (CorrelationVector.VALIDATE_CV_DURING_CREATION) {
-            CorrelationVector.validate(correlationVector, version);
-        }
-
-        final byte[] entropy = new byte[parameters.getEntropyBytes()];
-        rng.nextBytes(entropy);
-
-        long value = DateTimeUtils.getTicksSinceEpoch() >> parameters.getTicksBitsToDrop();
-        for (int i = 0; i < parameters.getEntropyBytes(); i++) {
-            value = (value << 8) | (entropy[i]);
-        }
-
-        // Generate a bitmask and mask the lower TotalBits in the value.
-        // The mask is generated by (1 << TotalBits) - 1. We need to handle the edge
-        // case when shifting 64 bits, as it wraps around.
-        value &= (parameters.getTotalBits() == 64 ? 0 : (long) 1 << parameters.getTotalBits()) - 1;
-
-        String s = String.valueOf((int) value);
-        if (parameters.getTotalBits() > 32) {
-            s = (value >> 32) + CV_DELIMITER + s;
-        }
-
-        String baseVector = new StringBuilder(correlationVector).append(CV_DELIMITER).append(s).toString();
-        if (isOversized(baseVector, 0, version)) {
-            return parse(correlationVector + CV_TERMINATOR);
-        } else {
-            return new CorrelationVector(correlationVector + CV_DELIMITER + s, 0, version, false);
-        }
+        return CorrelationVectorFactory.getDefault(VALIDATE_CV_DURING_CREATION).spin(correlationVector, parameters);
     }
 
     /**
@@ -183,37 +134,21 @@ public class CorrelationVector {
      *            uuid.
      * @return Generated CV base.
      */
-    private static String getBaseFromGuid(UUID uuid) {
+    static String getBaseFromGuid(UUID uuid) {
 
-        final ByteBuffer uuidBytes = ByteBuffer.wrap(new byte[16]);
-        uuidBytes.putLong(uuid.getMostSignificantBits());
-        uuidBytes.putLong(uuid.getLeastSignificantBits());
-        // Removes the base64 padding
-        final String cvBase = Base64Encoder.toBase64String(uuidBytes);
-        return cvBase.substring(0, CV_BASE_LENGTH_V2);
+        final byte[] uuidBytes = new byte[16];
+        putLong(uuidBytes, 0, uuid.getMostSignificantBits());
+        putLong(uuidBytes, 8, uuid.getLeastSignificantBits());
+        return Base64Encoder.toBase64String(uuidBytes, uuidBytes.length);
     }
 
     /**
-     * Generates a unique base64 string for the given CV version.
-     *
-     * @param version
-     *            CV version
-     * @return A unique base54 string.
+     * Writes the given value at the given index in big-endian order.
      */
-    private static String getUniqueValue(CorrelationVectorVersion version) {
-
-        if (CorrelationVectorVersion.V1 == version) {
-            final UUID uuid = UUID.randomUUID();
-            final ByteBuffer uuidBytes = ByteBuffer.wrap(new byte[12]);
-
-            uuidBytes.putLong(uuid.getMostSignificantBits());
-            uuidBytes.putInt((int) (uuid.getLeastSignificantBits() >> 32));
-            final String cvBase = Base64Encoder.toBase64String(uuidBytes);
-            return cvBase;
-        } else if (CorrelationVectorVersion.V2 == version) {
-            return CorrelationVector.getBaseFromGuid(UUID.randomUUID());
-        } else {
-            throw new IllegalArgumentException("Unsupported correlation vector version:" + version);
+    static void putLong(byte[] target, int index, long value) {
+        for (int i = 7; i >= 0; i--) {
+            target[index + i] = (byte) value;
+            value >>>= 8;
         }
     }
 
@@ -226,9 +161,9 @@ public class CorrelationVector {
      *            whether to report errors.
      * @return the inferred CV version.
      */
-    private static CorrelationVectorVersion inferVersion(String correlationVector, boolean reportErrors) {
+    static CorrelationVectorVersion inferVersion(CharSequence correlationVector, boolean reportErrors) {
 
-        final int index = correlationVector == null ? -1 : correlationVector.indexOf(CV_DELIMITER);
+        final int index = indexOf(correlationVector, CV_DELIMITER);
 
         if (CorrelationVector.CV_BASE_LENGTH == index) {
             return CorrelationVectorVersion.V1;
@@ -240,6 +175,21 @@ public class CorrelationVector {
         }
     }
 
+    private static int indexOf(CharSequence value, char c) {
+        if (value == null) {
+            return -1;
+        }
+        if (value instanceof String) {
+            return ((String) value).indexOf(c);
+        }
+        for (int i = 0, n = value.length(); i < n; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Gets the length of an integer. The given integer must be non-negative.
      * 
@@ -247,8 +197,64 @@ public class CorrelationVector {
      *            non-negative integer.
      * @return length of the given integer.
      */
-    private static int intLength(int i) {
-        return (i == 0) ? 1 : (int) Math.log10(i) + 1;
+    static int intLength(int i) {
+        int length = 1;
+        while (length < POWERS_OF_TEN.length && i >= POWERS_OF_TEN[length]) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative integer so that its last digit
+     * precedes the given index.
+     *
+     * @param i
+     *            non-negative integer.
+     * @param target
+     *            the array to write to.
+     * @param end
+     *            the index following the last digit.
+     */
+    static void writeDigits(int i, char[] target, int end) {
+        int p = end;
+        int value = i;
+        while (value >= 100) {
+            final int pair = value % 100;
+            value /= 100;
+            target[--p] = DIGIT_ONES[pair];
+            target[--p] = DIGIT_TENS[pair];
+        }
+        target[--p] = DIGIT_ONES[value];
+        if (value >= 10) {
+            target[--p] = DIGIT_TENS[value];
+        }
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative integer as ASCII bytes so that
+     * its last digit precedes the given index.
+     *
+     * @param i
+     *            non-negative integer.
+     * @param target
+     *            the array to write to.
+     * @param end
+     *            the index following the last digit.
+     */
+    static void writeDigits(int i, byte[] target, int end) {
+        int p = end;
+        int value = i;
+        while (value >= 100) {
+            final int pair = value % 100;
+            value /= 100;
+            target[--p] = (byte) DIGIT_ONES[pair];
+            target[--p] = (byte) DIGIT_TENS[pair];
+        }
+        target[--p] = (byte) DIGIT_ONES[value];
+        if (value >= 10) {
+            target[--p] = (byte) DIGIT_TENS[value];
+        }
     }
 
     /**
@@ -259,7 +265,7 @@ public class CorrelationVector {
      *            CV in string.
      * @return true is the given CV string is immutable.
      */
-    private static boolean isImmutable(String correlationVector) {
+    static boolean isImmutable(String correlationVector) {
         return correlationVector != null && !correlationVector.isEmpty()
                 && correlationVector.endsWith(CV_TERMINATOR + "");
     }
@@ -275,14 +281,54 @@ public class CorrelationVector {
      *            CV version.
      * @return true is the CV is oversized.
      */
-    private static boolean isOversized(String baseVector, int extension, CorrelationVectorVersion version) {
+    static boolean isOversized(String baseVector, int extension, CorrelationVectorVersion version) {
         if (baseVector == null || baseVector.isEmpty()) {
             return false;
         }
 
-        int cvLen = baseVector.length() + 1 + intLength(extension);
-        return (version == CorrelationVectorVersion.V1 && cvLen > MAX_CV_LENGTH)
-                || (version == CorrelationVectorVersion.V2 && cvLen > MAX_CV_LENGTH_V2);
+        return isOversized(baseVector.length(), extension, version);
+    }
+
+    /**
+     * Checks if a CV with a non-empty base of the given length is oversized.
+     *
+     * @param baseLength
+     *            length of the base vector.
+     * @param extension
+     *            extension number.
+     * @param version
+     *            CV version.
+     * @return true is the CV is oversized.
+     */
+    static boolean isOversized(int baseLength, int extension, CorrelationVectorVersion version) {
+        return extension > maxExtension(baseLength, version);
+    }
+
+    /**
+     * Gets the largest extension a CV with a non-empty base of the given length
+     * can have without being oversized.
+     *
+     * @param baseLength
+     *            length of the base vector.
+     * @param version
+     *            CV version.
+     * @return the largest extension, or -1 if the base leaves no room for one.
+     */
+    static int maxExtension(int baseLength, CorrelationVectorVersion version) {
+        final int maxLength;
+        if (version == CorrelationVectorVersion.V1) {
+            maxLength = MAX_CV_LENGTH;
+        } else if (version == CorrelationVectorVersion.V2) {
+            maxLength = MAX_CV_LENGTH_V2;
+        } else {
+            return Integer.MAX_VALUE;
+        }
+
+        final int digits = maxLength - baseLength - 1;
+        if (digits >= POWERS_OF_TEN.length) {
+            return Integer.MAX_VALUE;
+        }
+        return digits <= 0 ? -1 : POWERS_OF_TEN[digits] - 1;
     }
 
     /**
@@ -293,7 +339,7 @@ public class CorrelationVector {
      * @param version
      *            CV version.
      */
-    private static void validate(String correlationVector, CorrelationVectorVersion version) {
+    static void validate(String correlationVector, CorrelationVectorVersion version) {
 
         byte maxVectorLength;
         byte baseLength;
@@ -344,7 +390,7 @@ public class CorrelationVector {
      * message header.
      */
     public CorrelationVector() {
-        this(CorrelationVectorVersion.V1);
+        this(CorrelationVectorFactory.getDefault().getVersion());
     }
 
     /**
@@ -356,7 +402,8 @@ public class CorrelationVector {
      *            The correlation vector implementation version.
      */
     public CorrelationVector(CorrelationVectorVersion version) {
-        this(CorrelationVector.getUniqueValue(version), 0, version, false);
+        this(CorrelationVectorFactory.getDefault(), CorrelationVectorFactory.getDefault().generateBase(version), 0,
+                version, false);
     }
 
     /**
@@ -367,14 +414,21 @@ public class CorrelationVector {
      *            The Guid to use as a correlation vector base.
      */
     public CorrelationVector(UUID vectorBase) {
-        this(CorrelationVector.getBaseFromGuid(vectorBase), 0, CorrelationVectorVersion.V2, false);
+        this(CorrelationVectorFactory.getDefault(), CorrelationVector.getBaseFromGuid(vectorBase), 0,
+                CorrelationVectorVersion.V2, false);
+    }
+
+    CorrelationVector(CorrelationVectorFactory factory, String baseVector, int extension,
+            CorrelationVectorVersion version, boolean isImmutable) {
+        this(factory, new Segment(baseVector, extension, version), version, isImmutable);
     }
 
-    private CorrelationVector(String baseVector, int extension, CorrelationVectorVersion version, boolean isImmutable) {
-        this.baseVector = baseVector;
-        this.extension = new AtomicInteger(extension);
+    CorrelationVector(CorrelationVectorFactory factory, Segment segment, CorrelationVectorVersion version,
+            boolean isImmutable) {
+        this.factory = factory;
+        this.segment = segment;
         this.version = version;
-        this.isImmutable = isImmutable || isOversized(baseVector, extension, version);
+        this.isImmutable = isImmutable || segment.extension() > segment.maxExtension;
     }
 
     @Override
@@ -397,7 +451,7 @@ public class CorrelationVector {
     }
 
     public String getBaseVector() {
-        return this.baseVector;
+        return this.segment.base;
     }
 
     /**
@@ -406,11 +460,64 @@ public class CorrelationVector {
      * @return CV in string.
      */
     public String getValue() {
-        final StringBuilder s = new StringBuilder(this.baseVector).append(CV_DELIMITER).append(this.extension);
-        if (this.isImmutable) {
-            s.append(CV_TERMINATOR);
+        final Segment current = this.segment;
+        return render(current.base, current.extension(), this.isImmutable);
+    }
+
+    /**
+     * Appends the value of the correlation vector to the given builder without
+     * creating a string.
+     *
+     * @param target
+     *            the builder to append to.
+     * @return the builder.
+     */
+    public StringBuilder appendTo(StringBuilder target) {
+        final boolean immutable = this.isImmutable;
+        final Segment current = this.segment;
+        target.append(current.base).append(CV_DELIMITER).append(current.extension());
+        if (immutable) {
+            target.append(CV_TERMINATOR);
         }
-        return s.toString();
+        return target;
+    }
+
+    /**
+     * Appends the value of the correlation vector to the given target without
+     * creating a string.
+     *
+     * @param target
+     *            the target to append to, e.g. a writer or the buffer of a log
+     *            event.
+     * @return the target.
+     * @throws IOException
+     *             if the target fails to append.
+     */
+    public <A extends Appendable> A appendTo(A target) throws IOException {
+        final boolean immutable = this.isImmutable;
+        final Segment current = this.segment;
+        final int extension = current.extension();
+        target.append(current.base).append(CV_DELIMITER);
+        for (int digit = intLength(extension) - 1; digit >= 0; digit--) {
+            target.append((char) ('0' + (extension / POWERS_OF_TEN[digit]) % 10));
+        }
+        if (immutable) {
+            target.append(CV_TERMINATOR);
+        }
+        return target;
+    }
+
+    /**
+     * Gets a view of the current value of the correlation vector. The view is a
+     * snapshot that is not affected by later increments and renders its
+     * characters on demand, so it can be passed to loggers and builders
+     * accepting a {@link CharSequence} without creating the string of the value.
+     *
+     * @return the value of the CV.
+     */
+    public CharSequence asCharSequence() {
+        final Segment current = this.segment;
+        return new Value(current.base, current.extension(), this.isImmutable);
     }
 
     /**
@@ -424,7 +531,10 @@ public class CorrelationVector {
 
     /**
      * Increments the current extension by one. Do this before passing the value to
-     * an outbound message header.
+     * an outbound message header. When the incremented value would be oversized,
+     * the vector is terminated, or reset if its factory was built with a
+     * {@link CorrelationVectorFactory.Builder#resetSink(CorrelationVectorResetSink)
+     * reset sink}.
      *
      * @return The new value as a string that you can add to the outbound message
      *         header.
@@ -435,22 +545,317 @@ public class CorrelationVector {
             return getValue();
         }
 
-        int snapshot = 0;
-        int next = 0;
-        do {
-            snapshot = this.extension.get();
+        for (;;) {
+            final Segment current = this.segment;
+            final int snapshot = current.extension();
             if (snapshot == Integer.MAX_VALUE) {
                 return this.getValue();
             }
-            next = snapshot + 1;
+            final int next = snapshot + 1;
 
-            if (isOversized(this.baseVector, next, this.version)) {
-                this.isImmutable = true;
-                return this.getValue();
+            if (next > current.maxExtension) {
+                if (current != this.segment) {
+                    // Replaced concurrently, e.g. detached from a store.
+                    continue;
+                }
+                if (!this.reset(current)) {
+                    this.isImmutable = true;
+                    current.terminate();
+                    this.factory.getMetrics().onTerminate(this);
+                    FlightRecorderEvents.terminate(this);
+                    return this.getValue();
+                }
+            } else if (current.compareAndSet(snapshot, next)) {
+                final String value = render(current.base, next, false);
+                this.factory.getMetrics().onIncrement(this, value);
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Replaces the given oversized segment with a segment of a reset base, unless
+     * another thread already replaced it.
+     *
+     * @param oversized
+     *            the segment that can not be incremented any further.
+     * @return false if the factory does not reset vectors.
+     */
+    private boolean reset(Segment oversized) {
+        final String resetBase = this.factory.resetBase(oversized.base, this.version);
+        if (resetBase == null) {
+            return false;
+        }
+        if (SEGMENT.compareAndSet(this, oversized, new Segment(resetBase, 0, this.version))) {
+            this.factory.onReset(oversized.base, resetBase);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the current base vector and extension. The extensions of a segment
+     * stay unique after the vector is reset to a new segment.
+     *
+     * @return the current segment.
+     */
+    Segment segment() {
+        return this.segment;
+    }
+
+    /**
+     * Replaces the current segment with the given segment, unless it was already
+     * replaced.
+     *
+     * @param expect
+     *            the expected current segment.
+     * @param update
+     *            the new segment.
+     * @return true if the segment was replaced.
+     */
+    boolean replaceSegment(Segment expect, Segment update) {
+        return SEGMENT.compareAndSet(this, expect, update);
+    }
+
+    /**
+     * Reserves a block of consecutive extensions of the given segment with a
+     * single update of its extension, as if {@link #increment()} was called count
+     * times. The caller owns the extensions of the segment base from the returned
+     * value to the returned value plus count minus one.
+     *
+     * @param segment
+     *            the segment returned by {@link #segment()}.
+     * @param count
+     *            the number of extensions to reserve.
+     * @return the first reserved extension, or -1 if the block would make the CV
+     *         oversized or the CV is immutable.
+     */
+    int reserve(Segment segment, int count) {
+
+        if (this.isImmutable) {
+            return -1;
+        }
+
+        int snapshot = 0;
+        int last = 0;
+        do {
+            snapshot = segment.extension();
+            if (snapshot > Integer.MAX_VALUE - count) {
+                return -1;
+            }
+            last = snapshot + count;
+
+            if (last > segment.maxExtension) {
+                return -1;
+            }
+        } while (!segment.compareAndSet(snapshot, last));
+
+        return snapshot + 1;
+    }
+
+    /**
+     * Gets a value indicating whether the correlation vector is terminated and
+     * can no longer be changed.
+     *
+     * @return true if the CV is immutable.
+     */
+    boolean isImmutable() {
+        return this.isImmutable;
+    }
+
+    /**
+     * Gets the length of the value of the correlation vector.
+     *
+     * @return the number of characters of the CV.
+     */
+    int length() {
+        final Segment current = this.segment;
+        return current.base.length() + 1 + intLength(current.extension()) + (this.isImmutable ? 1 : 0);
+    }
+
+    /**
+     * Gets the number of extensions of the correlation vector, i.e. the number of
+     * elements following its base.
+     *
+     * @return the depth of the CV.
+     */
+    int depth() {
+        final String base = this.segment.base;
+        int depth = 1;
+        for (int i = base.length() - 1; i >= 0; i--) {
+            if (base.charAt(i) == CV_DELIMITER) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Writes the value of the correlation vector to the given array as ASCII
+     * bytes. A value longer than maxLength bytes is cut: at most maxLength bytes
+     * of its base are written.
+     *
+     * @param target
+     *            the array to write to.
+     * @param offset
+     *            the index of the first byte to write.
+     * @param maxLength
+     *            the maximum number of bytes to write.
+     * @return the number of bytes written, or -1 if the value was cut.
+     */
+    int writeTo(byte[] target, int offset, int maxLength) {
+        final Segment current = this.segment;
+        final String base = current.base;
+        final int baseLength = base.length();
+        final int extension = current.extension();
+        final boolean immutable = this.isImmutable;
+        final int length = baseLength + 1 + intLength(extension) + (immutable ? 1 : 0);
+
+        if (length > maxLength) {
+            final int cut = Math.min(baseLength, maxLength);
+            for (int i = 0; i < cut; i++) {
+                target[offset + i] = (byte) base.charAt(i);
+            }
+            return -1;
+        }
+
+        for (int i = 0; i < baseLength; i++) {
+            target[offset + i] = (byte) base.charAt(i);
+        }
+        target[offset + baseLength] = CV_DELIMITER;
+
+        writeDigits(extension, target, offset + length - (immutable ? 1 : 0));
+        if (immutable) {
+            target[offset + length - 1] = CV_TERMINATOR;
+        }
+        return length;
+    }
+
+    /**
+     * Gets the factory that created this vector.
+     *
+     * @return the factory of the CV.
+     */
+    CorrelationVectorFactory getFactory() {
+        return this.factory;
+    }
+
+    /**
+     * Increments the current extension and extends the result with the factory of
+     * this vector. This is the vector of an operation started by the operation of
+     * this vector, such as an asynchronous task.
+     *
+     * @return A new correlation vector extended from the incremented vector.
+     */
+    CorrelationVector createChild() {
+        return this.factory.extend(this.increment());
+    }
+
+    private static String render(String base, int extension, boolean immutable) {
+        final int baseLength = base.length();
+        final int end = baseLength + 1 + intLength(extension);
+        final char[] value = new char[immutable ? end + 1 : end];
+        base.getChars(0, baseLength, value, 0);
+        value[baseLength] = CV_DELIMITER;
+        writeDigits(extension, value, end);
+        if (immutable) {
+            value[end] = CV_TERMINATOR;
+        }
+        return new String(value);
+    }
+
+    /**
+     * Base vector of a correlation vector and its current extension. Subclasses
+     * keep the extension elsewhere, e.g. in a memory-mapped file.
+     */
+    static class Segment {
+
+        private static final AtomicIntegerFieldUpdater<Segment> EXTENSION = AtomicIntegerFieldUpdater
+                .newUpdater(Segment.class, "extension");
+
+        final String base;
+        /**
+         * The largest extension that does not make the CV oversized.
+         */
+        final int maxExtension;
+        private volatile int extension;
+
+        Segment(String base, int extension, CorrelationVectorVersion version) {
+            this(base, extension, (base == null || base.isEmpty()) ? Integer.MAX_VALUE
+                    : maxExtension(base.length(), version));
+        }
+
+        Segment(String base, int extension, int maxExtension) {
+            this.base = base;
+            this.extension = extension;
+            this.maxExtension = maxExtension;
+        }
+
+        int extension() {
+            return this.extension;
+        }
+
+        boolean compareAndSet(int expect, int update) {
+            return EXTENSION.compareAndSet(this, expect, update);
+        }
+
+        /**
+         * Called when the vector is terminated for being oversized, so that
+         * subclasses can keep the terminated state with the extension.
+         */
+        void terminate() {
+        }
+    }
+
+    /**
+     * Snapshot of the value of a correlation vector, rendered on demand.
+     */
+    private static final class Value implements CharSequence {
+
+        private final String base;
+        private final int extension;
+        private final int digits;
+        private final boolean immutable;
+
+        Value(String base, int extension, boolean immutable) {
+            this.base = base;
+            this.extension = extension;
+            this.digits = intLength(extension);
+            this.immutable = immutable;
+        }
+
+        @Override
+        public int length() {
+            return this.base.length() + 1 + this.digits + (this.immutable ? 1 : 0);
+        }
+
+        @Override
+        public char charAt(int index) {
+            final int baseLength = this.base.length();
+            if (index < baseLength) {
+                return this.base.charAt(index);
             }
-        } while (!this.extension.compareAndSet(snapshot, next));
+            if (index == baseLength) {
+                return CV_DELIMITER;
+            }
+            final int digit = index - baseLength - 1;
+            if (digit < this.digits) {
+                return (char) ('0' + (this.extension / POWERS_OF_TEN[this.digits - 1 - digit]) % 10);
+            }
+            if (digit == this.digits && this.immutable) {
+                return CV_TERMINATOR;
+            }
+            throw new IndexOutOfBoundsException("index " + index + ", length " + this.length());
+        }
 
-        return this.baseVector + CV_DELIMITER + next;
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return render(this.base, this.extension, this.immutable);
+        }
     }
 
     /**
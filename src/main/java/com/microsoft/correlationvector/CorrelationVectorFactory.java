@@ -0,0 +1,625 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Creates correlation vectors with a fixed, immutable configuration. A factory
+ * is built once through {@link #builder()} and can be shared by any number of
+ * threads. The static methods of {@link CorrelationVector} delegate to the
+ * default factory.
+ */
+public final class CorrelationVectorFactory {
+
+    private static final CorrelationVectorFactory DEFAULT = builder().build();
+    private static final CorrelationVectorFactory VALIDATING = builder().validateDuringCreation(true).build();
+
+    private final CorrelationVectorVersion version;
+    private final boolean validateDuringCreation;
+    private final BaseVectorGenerator baseGenerator;
+    private final EntropySource entropySource;
+    private final TickSource tickSource;
+    private final boolean internBaseVectors;
+    private final CorrelationVectorMetrics metrics;
+    private final CorrelationVectorResetSink resetSink;
+
+    /**
+     * Gets the default factory. It creates V1 vectors, does not validate the
+     * vectors on creation and reports no metrics.
+     *
+     * @return the default factory.
+     */
+    public static CorrelationVectorFactory getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the default factory with the given validation policy.
+     *
+     * @param validateDuringCreation
+     *            whether to validate the vectors on creation.
+     * @return the default factory.
+     */
+    static CorrelationVectorFactory getDefault(boolean validateDuringCreation) {
+        return validateDuringCreation ? VALIDATING : DEFAULT;
+    }
+
+    /**
+     * Creates a new builder initialized with the default configuration.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private CorrelationVectorFactory(Builder builder) {
+        this.version = builder.version;
+        this.validateDuringCreation = builder.validateDuringCreation;
+        this.baseGenerator = builder.baseGenerator;
+        this.entropySource = builder.entropySource;
+        this.tickSource = builder.tickSource;
+        this.internBaseVectors = builder.internBaseVectors;
+        this.metrics = builder.metrics;
+        this.resetSink = builder.resetSink;
+    }
+
+    /**
+     * Creates a new correlation vector of the configured version. This should only
+     * be called when no correlation vector was found in the message header.
+     *
+     * @return A new correlation vector.
+     */
+    public CorrelationVector create() {
+        return this.create(this.version);
+    }
+
+    /**
+     * Creates a new correlation vector of the given version. This should only be
+     * called when no correlation vector was found in the message header.
+     *
+     * @param version
+     *            The correlation vector implementation version.
+     * @return A new correlation vector.
+     */
+    public CorrelationVector create(CorrelationVectorVersion version) {
+        return new CorrelationVector(this, this.generateBase(version), 0, version, false);
+    }
+
+    /**
+     * Creates a new correlation vector of the V2 implementation using the given
+     * Guid as the vector base.
+     *
+     * @param vectorBase
+     *            The Guid to use as a correlation vector base.
+     * @return A new correlation vector.
+     */
+    public CorrelationVector create(UUID vectorBase) {
+        return new CorrelationVector(this, CorrelationVector.getBaseFromGuid(vectorBase), 0,
+                CorrelationVectorVersion.V2, false);
+    }
+
+    /**
+     * Creates a new correlation vector by extending an existing value. This should
+     * be done at the entry point of an operation, taken from the message header
+     * indicated by the CV header name. An oversized result is terminated, or reset
+     * if a reset sink is configured.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return A new correlation vector extended from the current vector.
+     */
+    public CorrelationVector extend(String correlationVector) {
+
+        if (CorrelationVector.isImmutable(correlationVector)) {
+            return this.parse(correlationVector);
+        }
+
+        final Object event = FlightRecorderEvents.beginExtend();
+        final CorrelationVectorVersion version = CorrelationVector.inferVersion(correlationVector,
+                this.validateDuringCreation);
+
+        if (this.validateDuringCreation) {
+            CorrelationVector.validate(correlationVector, version);
+        }
+
+        final CorrelationVector cv;
+        if (CorrelationVector.isOversized(correlationVector, 0, version)) {
+            cv = this.reset(correlationVector, version);
+            if (cv == null) {
+                final CorrelationVector terminated = this.terminate(correlationVector);
+                FlightRecorderEvents.endExtend(event, terminated);
+                return terminated;
+            }
+        } else {
+            cv = new CorrelationVector(this, this.internBase(correlationVector), 0, version, false);
+        }
+        this.metrics.onExtend(cv);
+        FlightRecorderEvents.endExtend(event, cv);
+        return cv;
+    }
+
+    /**
+     * Creates a new correlation vector by parsing its string representation.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return CV.
+     */
+    public CorrelationVector parse(String correlationVector) {
+
+        final CorrelationVector cv = this.tryParse(correlationVector);
+        if (cv == null) {
+            this.metrics.onParseFailure(correlationVector);
+            return this.create(CorrelationVectorVersion.V1);
+        }
+
+        this.metrics.onParse(cv);
+        return cv;
+    }
+
+    /**
+     * Creates a new correlation vector by applying the Spin operator to an existing
+     * value using the default spin parameters.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return A new correlation vector extended from the current vector.
+     */
+    public CorrelationVector spin(String correlationVector) {
+        return this.spin(correlationVector, SpinParameters.getDefaultParameters());
+    }
+
+    /**
+     * Creates a new correlation vector by applying the Spin operator to an existing
+     * value. This should be done at the entry point of an operation. An oversized
+     * result is terminated, or reset if a reset sink is configured.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @param parameters
+     *            The parameters to use when applying the Spin operator.
+     * @return A new correlation vector extended from the current vector.
+     */
+    public CorrelationVector spin(String correlationVector, SpinParameters parameters) {
+
+        if (CorrelationVector.isImmutable(correlationVector)) {
+            return this.parse(correlationVector);
+        }
+
+        final Object event = FlightRecorderEvents.beginSpin();
+        final CorrelationVectorVersion version = CorrelationVector.inferVersion(correlationVector,
+                this.validateDuringCreation);
+
+        if (this.validateDuringCreation) {
+            CorrelationVector.validate(correlationVector, version);
+        }
+
+        final String baseVector = new StringBuilder(correlationVector).append(CorrelationVector.CV_DELIMITER)
+                .append(this.sortValue(parameters)).toString();
+        final CorrelationVector cv;
+        if (CorrelationVector.isOversized(baseVector, 0, version)) {
+            cv = this.reset(baseVector, version);
+            if (cv == null) {
+                final CorrelationVector terminated = this.terminate(correlationVector);
+                FlightRecorderEvents.endSpin(event, terminated);
+                return terminated;
+            }
+        } else {
+            cv = new CorrelationVector(this, baseVector, 0, version, false);
+        }
+        this.metrics.onSpin(cv);
+        FlightRecorderEvents.endSpin(event, cv);
+        return cv;
+    }
+
+    /**
+     * Gets the version of the vectors created by {@link #create()}.
+     *
+     * @return CV version.
+     */
+    public CorrelationVectorVersion getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets a value indicating whether the vectors are validated on creation.
+     *
+     * @return true if the vectors are validated on creation.
+     */
+    public boolean isValidateDuringCreation() {
+        return this.validateDuringCreation;
+    }
+
+    /**
+     * Gets a value indicating whether the base vectors of extended and parsed
+     * vectors are interned.
+     *
+     * @return true if the base vectors are interned.
+     */
+    public boolean isInternBaseVectors() {
+        return this.internBaseVectors;
+    }
+
+    /**
+     * Gets the metrics sink of this factory.
+     *
+     * @return metrics sink.
+     */
+    public CorrelationVectorMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Gets the sink of the mappings recorded by the Reset operator.
+     *
+     * @return the reset sink, or null if oversized vectors are terminated.
+     */
+    public CorrelationVectorResetSink getResetSink() {
+        return this.resetSink;
+    }
+
+    /**
+     * Computes the base replacing an oversized base: the first element of the
+     * base followed by a sort value, as computed by the Spin operator with the
+     * default parameters.
+     *
+     * @param baseVector
+     *            the oversized base.
+     * @param version
+     *            CV version.
+     * @return the reset base, or null if this factory does not reset vectors or
+     *         the base can not be reset.
+     */
+    String resetBase(String baseVector, CorrelationVectorVersion version) {
+        if (this.resetSink == null || baseVector == null) {
+            return null;
+        }
+
+        final int root = baseVector.indexOf(CorrelationVector.CV_DELIMITER);
+        if (root <= 0) {
+            return null;
+        }
+
+        final String resetBase = new StringBuilder(baseVector.substring(0, root))
+                .append(CorrelationVector.CV_DELIMITER).append(this.sortValue(SpinParameters.getDefaultParameters()))
+                .toString();
+        return CorrelationVector.isOversized(resetBase, 0, version) ? null : resetBase;
+    }
+
+    /**
+     * Reports a reset to the reset sink.
+     *
+     * @param previousBase
+     *            the base that could no longer be extended or incremented.
+     * @param resetBase
+     *            the base that replaces it.
+     */
+    void onReset(String previousBase, String resetBase) {
+        this.resetSink.onReset(previousBase, resetBase);
+    }
+
+    /**
+     * Generates a new CV base for the given version.
+     *
+     * @param version
+     *            CV version.
+     * @return Generated CV base.
+     */
+    String generateBase(CorrelationVectorVersion version) {
+        final Object event = FlightRecorderEvents.beginBaseGeneration();
+        final String base = this.baseGenerator.generateBase(version);
+        this.metrics.onBaseGenerated(version);
+        FlightRecorderEvents.endBaseGeneration(event, version);
+        return base;
+    }
+
+    /**
+     * Computes the sort value appended by the Spin operator.
+     *
+     * @param parameters
+     *            The parameters to use when applying the Spin operator.
+     * @return the sort value, made of one element or of two elements when it
+     *         has more than 32 bits.
+     */
+    private String sortValue(SpinParameters parameters) {
+        final byte[] entropy = new byte[parameters.getEntropyBytes()];
+        this.entropySource.nextBytes(entropy);
+
+        long value = this.tickSource.getTicksSinceEpoch() >> parameters.getTicksBitsToDrop();
+        for (int i = 0; i < parameters.getEntropyBytes(); i++) {
+            value = (value << 8) | (entropy[i]);
+        }
+
+        // Generate a bitmask and mask the lower TotalBits in the value.
+        // The mask is generated by (1 << TotalBits) - 1. We need to handle the edge
+        // case when shifting 64 bits, as it wraps around.
+        value &= (parameters.getTotalBits() == 64 ? 0 : (long) 1 << parameters.getTotalBits()) - 1;
+
+        String s = String.valueOf((int) value);
+        if (parameters.getTotalBits() > 32) {
+            s = (value >> 32) + CorrelationVector.CV_DELIMITER + s;
+        }
+        return s;
+    }
+
+    /**
+     * Creates the vector of the reset base of an oversized base, if this factory
+     * resets vectors.
+     *
+     * @param oversizedBase
+     *            the base that would make the vector oversized.
+     * @param version
+     *            CV version.
+     * @return the reset CV, or null if the vector is to be terminated.
+     */
+    private CorrelationVector reset(String oversizedBase, CorrelationVectorVersion version) {
+        final String resetBase = this.resetBase(oversizedBase, version);
+        if (resetBase == null) {
+            return null;
+        }
+
+        this.onReset(oversizedBase, resetBase);
+        return new CorrelationVector(this, resetBase, 0, version, false);
+    }
+
+    /**
+     * Creates a terminated vector from a value that can not be extended any
+     * further.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return the terminated CV.
+     */
+    private CorrelationVector terminate(String correlationVector) {
+
+        final CorrelationVector cv = this.tryParse(correlationVector + CorrelationVector.CV_TERMINATOR);
+        if (cv == null) {
+            this.metrics.onParseFailure(correlationVector);
+            return this.create(CorrelationVectorVersion.V1);
+        }
+
+        this.metrics.onTerminate(cv);
+        FlightRecorderEvents.terminate(cv);
+        return cv;
+    }
+
+    /**
+     * Parses the string representation of a CV.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return the parsed CV, or null if the string is not a valid CV.
+     */
+    private CorrelationVector tryParse(String correlationVector) {
+
+        if ((correlationVector == null) || correlationVector.trim().isEmpty()) {
+            return null;
+        }
+
+        final int p = correlationVector.lastIndexOf(CorrelationVector.CV_DELIMITER);
+        if (p <= 0) {
+            return null;
+        }
+
+        final boolean isImmutable = CorrelationVector.isImmutable(correlationVector);
+        final String extensionVal = isImmutable ? correlationVector.substring(p + 1, correlationVector.length() - 1)
+                : correlationVector.substring(p + 1);
+        final int extension;
+        try {
+            extension = Integer.parseInt(extensionVal);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+        if (extension < 0) {
+            return null;
+        }
+
+        return new CorrelationVector(this, this.internBase(correlationVector.substring(0, p)), extension,
+                CorrelationVector.inferVersion(correlationVector, false), isImmutable);
+    }
+
+    private String internBase(String baseVector) {
+        return this.internBaseVectors ? baseVector.intern() : baseVector;
+    }
+
+    /**
+     * Builder of {@link CorrelationVectorFactory} instances.
+     */
+    public static final class Builder {
+
+        private CorrelationVectorVersion version = CorrelationVectorVersion.V1;
+        private boolean validateDuringCreation = false;
+        private BaseVectorGenerator baseGenerator = UuidBaseVectorGenerator.INSTANCE;
+        private EntropySource entropySource = RandomEntropySource.INSTANCE;
+        private TickSource tickSource = SystemTickSource.INSTANCE;
+        private boolean internBaseVectors = false;
+        private CorrelationVectorMetrics metrics = CorrelationVectorMetrics.NONE;
+        private CorrelationVectorResetSink resetSink;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the version of the vectors created by
+         * {@link CorrelationVectorFactory#create()}. Defaults to V1.
+         *
+         * @param value
+         *            CV version.
+         * @return this builder.
+         */
+        public Builder version(CorrelationVectorVersion value) {
+            this.version = checkNotNull(value, "version");
+            return this;
+        }
+
+        /**
+         * Sets whether to validate the vectors on creation. Defaults to false.
+         *
+         * @param value
+         *            the validation policy.
+         * @return this builder.
+         */
+        public Builder validateDuringCreation(boolean value) {
+            this.validateDuringCreation = value;
+            return this;
+        }
+
+        /**
+         * Sets the generator of new CV bases. Defaults to random UUIDs. Use a
+         * {@link FastStartBaseVectorGenerator} in short-lived processes to avoid
+         * seeding a SecureRandom before the first vector is created.
+         *
+         * @param value
+         *            base generator.
+         * @return this builder.
+         */
+        public Builder baseGenerator(BaseVectorGenerator value) {
+            this.baseGenerator = checkNotNull(value, "baseGenerator");
+            return this;
+        }
+
+        /**
+         * Sets the source of the entropy used by the Spin operator. Defaults to a
+         * shared {@link Random} instance.
+         *
+         * @param value
+         *            entropy source.
+         * @return this builder.
+         */
+        public Builder entropySource(EntropySource value) {
+            this.entropySource = checkNotNull(value, "entropySource");
+            return this;
+        }
+
+        /**
+         * Sets the source of the clock ticks used by the Spin operator. Defaults to
+         * the system clock.
+         *
+         * @param value
+         *            tick source.
+         * @return this builder.
+         */
+        public Builder tickSource(TickSource value) {
+            this.tickSource = checkNotNull(value, "tickSource");
+            return this;
+        }
+
+        /**
+         * Sets whether the base vectors of extended and parsed vectors are interned,
+         * so that vectors sharing a base share a single string. Defaults to false.
+         *
+         * @param value
+         *            the interning policy.
+         * @return this builder.
+         */
+        public Builder internBaseVectors(boolean value) {
+            this.internBaseVectors = value;
+            return this;
+        }
+
+        /**
+         * Sets the metrics sink. Defaults to {@link CorrelationVectorMetrics#NONE}.
+         * Use a {@link CompositeCorrelationVectorMetrics} to notify several sinks.
+         *
+         * @param value
+         *            metrics sink.
+         * @return this builder.
+         */
+        public Builder metrics(CorrelationVectorMetrics value) {
+            this.metrics = checkNotNull(value, "metrics");
+            return this;
+        }
+
+        /**
+         * Enables the Reset operator. Vectors that would become oversized by being
+         * extended, spun or incremented are reset to a short base instead of
+         * being terminated, and each reset is reported to the given sink. By
+         * default oversized vectors are terminated.
+         *
+         * @param value
+         *            the sink of the reset mappings.
+         * @return this builder.
+         */
+        public Builder resetSink(CorrelationVectorResetSink value) {
+            this.resetSink = checkNotNull(value, "resetSink");
+            return this;
+        }
+
+        /**
+         * Creates a factory with the current configuration.
+         *
+         * @return a new factory.
+         */
+        public CorrelationVectorFactory build() {
+            return new CorrelationVectorFactory(this);
+        }
+
+        private static <T> T checkNotNull(T value, String name) {
+            if (value == null) {
+                throw new IllegalArgumentException(name + " can not be null");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Generates CV bases from random UUIDs.
+     */
+    private static final class UuidBaseVectorGenerator implements BaseVectorGenerator {
+
+        private static final UuidBaseVectorGenerator INSTANCE = new UuidBaseVectorGenerator();
+
+        @Override
+        public String generateBase(CorrelationVectorVersion version) {
+
+            if (CorrelationVectorVersion.V1 == version) {
+                final UUID uuid = UUID.randomUUID();
+                final byte[] uuidBytes = new byte[16];
+                CorrelationVector.putLong(uuidBytes, 0, uuid.getMostSignificantBits());
+                CorrelationVector.putLong(uuidBytes, 8, uuid.getLeastSignificantBits());
+                return Base64Encoder.toBase64String(uuidBytes, 12);
+            } else if (CorrelationVectorVersion.V2 == version) {
+                return CorrelationVector.getBaseFromGuid(UUID.randomUUID());
+            } else {
+                throw new IllegalArgumentException("Unsupported correlation vector version:" + version);
+            }
+        }
+    }
+
+    /**
+     * Entropy source backed by a shared {@link Random}, created on first use.
+     */
+    private static final class RandomEntropySource implements EntropySource {
+
+        private static final RandomEntropySource INSTANCE = new RandomEntropySource();
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            Holder.RNG.nextBytes(bytes);
+        }
+
+        private static final class Holder {
+            private static final Random RNG = new Random();
+        }
+    }
+
+    /**
+     * Tick source backed by the system clock.
+     */
+    private static final class SystemTickSource implements TickSource {
+
+        private static final SystemTickSource INSTANCE = new SystemTickSource();
+
+        @Override
+        public long getTicksSinceEpoch() {
+            return DateTimeUtils.getTicksSinceEpoch();
+        }
+    }
+}
@@ -0,0 +1,467 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Remembers the correlation vectors seen recently in a fixed amount of memory,
+ * to detect retries and duplicate deliveries of messages.
+ * <p/>
+ * The filter is a Bloom filter of the binary form of the vectors: the bits of
+ * the decoded base and the values of the extensions. It answers that a vector
+ * was not seen, or that it was probably seen with the configured false
+ * positive rate; it never misses a vector seen within the window. The filter
+ * is split into generations that each cover one window of time. Vectors are
+ * added to the current generation and looked up in all of them, and the
+ * oldest generation is cleared when the window elapses, so a vector is
+ * remembered for at least the window times the number of generations minus
+ * one.
+ * <p/>
+ * Each vector sets bits in a single 512-bit block, i.e. one cache line. Adds
+ * and lookups are lock-free, do not allocate and accept the value of a header
+ * as characters or as bytes.
+ */
+public final class CorrelationVectorFilter {
+
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_WORDS = BLOCK_BITS / Long.SIZE;
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_WORDS;
+    private static final int MAX_HASH_COUNT = 24;
+    private static final int SLICE_BITS = 9;
+    private static final int SLICES_PER_HASH = Long.SIZE / SLICE_BITS;
+
+    /**
+     * Blocked Bloom filters are less accurate than classic ones with the same
+     * number of bits, the more so as the false positive rate decreases. The
+     * filter gets this many more bits per decade of the rate, which keeps it
+     * close to the configured rate down to 10^-4. Lower rates are only reached
+     * within a small factor.
+     */
+    private static final double BLOCKED_MARGIN_PER_DECADE = 0.125;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long TERMINATED = 0x5851F42D4C957F2DL;
+    private static final int CLOCK_SAMPLE_MASK = 15;
+
+    private static final AtomicLongFieldUpdater<CorrelationVectorFilter> DEADLINE = AtomicLongFieldUpdater
+            .newUpdater(CorrelationVectorFilter.class, "deadline");
+
+    private final AtomicLongArray[] generations;
+    private final int blocks;
+    private final int hashCount;
+    private final long windowNanos;
+
+    private volatile int current;
+    private volatile long deadline;
+
+    /**
+     * Creates a new builder initialized with the default configuration.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private CorrelationVectorFilter(Builder builder) {
+        final double rate = builder.falsePositiveRate / builder.generations;
+        final double bitsPerEntry = -Math.log(rate) / (Math.log(2) * Math.log(2));
+        this.hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerEntry * Math.log(2))));
+
+        final double margin = 1 + BLOCKED_MARGIN_PER_DECADE * -Math.log10(builder.falsePositiveRate);
+        final double bits = Math.ceil(builder.expectedInsertions * bitsPerEntry * margin);
+        if (bits / BLOCK_BITS > MAX_BLOCKS) {
+            throw new IllegalArgumentException("The filter would need more than " + MAX_BLOCKS + " blocks per generation");
+        }
+        this.blocks = (int) Math.max(1, Math.ceil(bits / BLOCK_BITS));
+
+        this.generations = new AtomicLongArray[builder.generations];
+        for (int i = 0; i < this.generations.length; i++) {
+            this.generations[i] = new AtomicLongArray(this.blocks * BLOCK_WORDS);
+        }
+        this.windowNanos = builder.windowNanos;
+        this.deadline = System.nanoTime() + this.windowNanos;
+    }
+
+    /**
+     * Adds the given vector to the filter.
+     *
+     * @param correlationVector
+     *            CV in string, e.g. the value of a header.
+     * @return true if the CV was not seen within the window, false if it was
+     *         probably seen.
+     */
+    public boolean add(CharSequence correlationVector) {
+        return this.addHash(hash(correlationVector, -1, false));
+    }
+
+    /**
+     * Adds the given vector to the filter.
+     *
+     * @param correlationVector
+     *            the ASCII bytes of the CV.
+     * @param offset
+     *            the index of the first byte of the CV.
+     * @param length
+     *            the number of bytes of the CV.
+     * @return true if the CV was not seen within the window, false if it was
+     *         probably seen.
+     */
+    public boolean add(byte[] correlationVector, int offset, int length) {
+        return this.addHash(hash(correlationVector, offset, length));
+    }
+
+    /**
+     * Adds the current value of the given vector to the filter.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return true if the CV was not seen within the window, false if it was
+     *         probably seen.
+     */
+    public boolean add(CorrelationVector correlationVector) {
+        return this.addHash(hash(correlationVector));
+    }
+
+    /**
+     * Gets a value indicating whether the given vector was probably seen within
+     * the window.
+     *
+     * @param correlationVector
+     *            CV in string, e.g. the value of a header.
+     * @return false if the CV was not seen, true if it was probably seen.
+     */
+    public boolean mightContain(CharSequence correlationVector) {
+        return this.containsHash(hash(correlationVector, -1, false));
+    }
+
+    /**
+     * Gets a value indicating whether the given vector was probably seen within
+     * the window.
+     *
+     * @param correlationVector
+     *            the ASCII bytes of the CV.
+     * @param offset
+     *            the index of the first byte of the CV.
+     * @param length
+     *            the number of bytes of the CV.
+     * @return false if the CV was not seen, true if it was probably seen.
+     */
+    public boolean mightContain(byte[] correlationVector, int offset, int length) {
+        return this.containsHash(hash(correlationVector, offset, length));
+    }
+
+    /**
+     * Gets a value indicating whether the current value of the given vector was
+     * probably seen within the window.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return false if the CV was not seen, true if it was probably seen.
+     */
+    public boolean mightContain(CorrelationVector correlationVector) {
+        return this.containsHash(hash(correlationVector));
+    }
+
+    /**
+     * Forgets all the vectors.
+     */
+    public synchronized void clear() {
+        for (final AtomicLongArray generation : this.generations) {
+            clear(generation);
+        }
+    }
+
+    /**
+     * Gets the number of bits set by each vector.
+     *
+     * @return the number of hash functions of the filter.
+     */
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * Gets the memory used by the bits of the filter.
+     *
+     * @return the size of the filter in bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) this.generations.length * this.blocks * BLOCK_WORDS * (Long.SIZE / Byte.SIZE);
+    }
+
+    /**
+     * Starts a new generation, clearing the oldest one.
+     */
+    synchronized void rotate() {
+        final int next = (this.current + 1) % this.generations.length;
+        // The oldest generation is cleared before it becomes the current one, so
+        // that concurrent adds go to a generation that is not being cleared.
+        clear(this.generations[next]);
+        this.current = next;
+    }
+
+    private boolean addHash(long hash) {
+        this.rotateIfDue(hash);
+        final int current = this.current;
+        final int block = this.block(hash);
+        boolean added = this.set(this.generations[current], block, hash);
+        if (added) {
+            for (int i = 1; i < this.generations.length && added; i++) {
+                added = !this.test(this.generations[(current + i) % this.generations.length], block, hash);
+            }
+        }
+        return added;
+    }
+
+    private boolean containsHash(long hash) {
+        this.rotateIfDue(hash);
+        final int block = this.block(hash);
+        for (final AtomicLongArray generation : this.generations) {
+            if (this.test(generation, block, hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rotates the generations when the window elapsed. The clock is only read
+     * for one operation in 16, picked by the low bits of the hash, which delays
+     * the rotation by a few operations and keeps the clock off the fast path.
+     */
+    private void rotateIfDue(long hash) {
+        if ((hash & CLOCK_SAMPLE_MASK) != 0) {
+            return;
+        }
+        final long deadline = this.deadline;
+        final long now = System.nanoTime();
+        if (now - deadline >= 0 && DEADLINE.compareAndSet(this, deadline, now + this.windowNanos)) {
+            this.rotate();
+        }
+    }
+
+    /**
+     * Maps the high 32 bits of the hash to a block without a division.
+     */
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * this.blocks) >>> 32) * BLOCK_WORDS;
+    }
+
+    /**
+     * Sets the bits of a vector in its block. The positions are 9-bit slices of
+     * a second hash, mixed again when its bits are used up.
+     *
+     * @return true if any bit was not set.
+     */
+    private boolean set(AtomicLongArray generation, int block, long hash) {
+        long positions = CorrelationSampler.mix(hash ^ GOLDEN_GAMMA);
+        boolean changed = false;
+        for (int i = 0; i < this.hashCount; i++) {
+            if (i > 0 && i % SLICES_PER_HASH == 0) {
+                positions = CorrelationSampler.mix(positions);
+            }
+            final int index = block + ((int) positions & (BLOCK_BITS - 1)) / Long.SIZE;
+            final long mask = 1L << positions;
+            long word = generation.get(index);
+            while ((word & mask) == 0) {
+                if (generation.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+                word = generation.get(index);
+            }
+            positions >>>= SLICE_BITS;
+        }
+        return changed;
+    }
+
+    private boolean test(AtomicLongArray generation, int block, long hash) {
+        long positions = CorrelationSampler.mix(hash ^ GOLDEN_GAMMA);
+        for (int i = 0; i < this.hashCount; i++) {
+            if (i > 0 && i % SLICES_PER_HASH == 0) {
+                positions = CorrelationSampler.mix(positions);
+            }
+            if ((generation.get(block + ((int) positions & (BLOCK_BITS - 1)) / Long.SIZE) & (1L << positions)) == 0) {
+                return false;
+            }
+            positions >>>= SLICE_BITS;
+        }
+        return true;
+    }
+
+    private static void clear(AtomicLongArray generation) {
+        for (int i = 0; i < generation.length(); i++) {
+            generation.lazySet(i, 0);
+        }
+    }
+
+    private static long hash(CorrelationVector correlationVector) {
+        final boolean immutable = correlationVector.isImmutable();
+        final CorrelationVector.Segment current = correlationVector.segment();
+        return hash(current.base, current.extension(), immutable);
+    }
+
+    /**
+     * Hashes the binary form of a vector: the base is hashed by
+     * {@link BaseHashes}, as by {@link CorrelationSampler#hash(CharSequence)},
+     * then each extension is mixed in as a number.
+     *
+     * @param value
+     *            the CV in string, or its base.
+     * @param extension
+     *            the extension following the value, or -1.
+     * @param immutable
+     *            true if the CV is terminated.
+     * @return the hash of the CV.
+     */
+    static long hash(CharSequence value, int extension, boolean immutable) {
+        final int length = value.length();
+        int i = BaseHashes.baseLength(value);
+        long state = BaseHashes.hash(value, i);
+
+        boolean terminated = immutable;
+        long element = -1;
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == CorrelationVector.CV_DELIMITER) {
+                state = mixElement(state, element);
+                element = 0;
+            } else if (c == CorrelationVector.CV_TERMINATOR) {
+                terminated = true;
+            } else {
+                element = element * 10 + (c - '0');
+            }
+        }
+        state = mixElement(state, element);
+        state = mixElement(state, extension);
+        return terminated ? CorrelationSampler.mix(state ^ TERMINATED) : state;
+    }
+
+    /**
+     * Hashes a vector in ASCII bytes, like {@link #hash(CharSequence, int, boolean)}.
+     */
+    static long hash(byte[] value, int offset, int length) {
+        final int end = offset + length;
+        final int baseLength = BaseHashes.baseLength(value, offset, length);
+        long state = BaseHashes.hash(value, offset, baseLength);
+        int i = offset + baseLength;
+
+        boolean terminated = false;
+        long element = -1;
+        for (; i < end; i++) {
+            final int c = value[i];
+            if (c == CorrelationVector.CV_DELIMITER) {
+                state = mixElement(state, element);
+                element = 0;
+            } else if (c == CorrelationVector.CV_TERMINATOR) {
+                terminated = true;
+            } else {
+                element = element * 10 + (c - '0');
+            }
+        }
+        state = mixElement(state, element);
+        return terminated ? CorrelationSampler.mix(state ^ TERMINATED) : state;
+    }
+
+    /**
+     * Mixes an extension into the hash; -1 stands for no extension.
+     */
+    private static long mixElement(long state, long element) {
+        return element < 0 ? state : CorrelationSampler.mix((state + GOLDEN_GAMMA) ^ element);
+    }
+
+    /**
+     * Builder of {@link CorrelationVectorFilter}.
+     */
+    public static final class Builder {
+
+        private long expectedInsertions = 1000000;
+        private double falsePositiveRate = 0.001;
+        private long windowNanos = TimeUnit.MINUTES.toNanos(1);
+        private int generations = 2;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the number of vectors added in one window for which the false
+         * positive rate holds. Defaults to one million.
+         *
+         * @param value
+         *            number of vectors per window.
+         * @return this builder.
+         */
+        public Builder expectedInsertions(long value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("expectedInsertions must be positive");
+            }
+            this.expectedInsertions = value;
+            return this;
+        }
+
+        /**
+         * Sets the probability that a vector that was not seen is reported as seen.
+         * Defaults to 0.001.
+         *
+         * @param value
+         *            false positive rate, between 0 and 1 exclusive.
+         * @return this builder.
+         */
+        public Builder falsePositiveRate(double value) {
+            if (!(value > 0 && value < 1)) {
+                throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1 exclusive");
+            }
+            this.falsePositiveRate = value;
+            return this;
+        }
+
+        /**
+         * Sets the time covered by each generation. Defaults to 1 minute.
+         *
+         * @param value
+         *            window.
+         * @param unit
+         *            unit of the window.
+         * @return this builder.
+         */
+        public Builder window(long value, TimeUnit unit) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("window must be positive");
+            }
+            this.windowNanos = unit.toNanos(value);
+            return this;
+        }
+
+        /**
+         * Sets the number of generations. Defaults to 2.
+         *
+         * @param value
+         *            number of generations, between 2 and 16.
+         * @return this builder.
+         */
+        public Builder generations(int value) {
+            if (value < 2 || value > 16) {
+                throw new IllegalArgumentException("generations must be between 2 and 16");
+            }
+            this.generations = value;
+            return this;
+        }
+
+        /**
+         * Creates a filter with the current configuration.
+         *
+         * @return a new filter.
+         */
+        public CorrelationVectorFilter build() {
+            return new CorrelationVectorFilter(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Filter of the JDK HTTP server that extends the correlation vector of each
+ * request, taken from the {@value CorrelationVector#HEADER_NAME} header, and
+ * makes it current while the handler runs:
+ *
+ * <pre>
+ * server.createContext("/", handler).getFilters().add(new CorrelationVectorHttpFilter());
+ * </pre>
+ *
+ * The handler reads the vector with {@link CorrelationContext#current()}, or
+ * with {@link #get(HttpExchange)} from another thread, and increments it for
+ * each outbound call. The header value is extended without being copied. A new
+ * vector is created when the header is missing, or when it is invalid and the
+ * factory validates on creation.
+ */
+public class CorrelationVectorHttpFilter extends Filter {
+
+    /**
+     * The name of the exchange attribute holding the correlation vector of the
+     * request.
+     */
+    public static final String ATTRIBUTE_NAME = CorrelationVector.class.getName();
+
+    private final CorrelationVectorFactory factory;
+
+    /**
+     * Creates a filter extending the vectors with the default factory.
+     */
+    public CorrelationVectorHttpFilter() {
+        this(CorrelationVectorFactory.getDefault());
+    }
+
+    /**
+     * Creates a filter extending the vectors with the given factory.
+     *
+     * @param factory
+     *            the factory used to extend the headers.
+     */
+    public CorrelationVectorHttpFilter(CorrelationVectorFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory can not be null");
+        }
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the correlation vector of the given exchange.
+     *
+     * @param exchange
+     *            an exchange that went through the filter.
+     * @return the CV of the request, or null if the exchange did not go through
+     *         the filter.
+     */
+    public static CorrelationVector get(HttpExchange exchange) {
+        return (CorrelationVector) exchange.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        final CorrelationVector correlationVector = this
+                .extend(exchange.getRequestHeaders().getFirst(CorrelationVector.HEADER_NAME));
+        exchange.setAttribute(ATTRIBUTE_NAME, correlationVector);
+        final long token = CorrelationContext.attach(correlationVector);
+        try {
+            chain.doFilter(exchange);
+        } catch (IOException | RuntimeException | Error e) {
+            CorrelationContext.detach(token, e);
+            throw e;
+        }
+        CorrelationContext.detach(token);
+    }
+
+    @Override
+    public String description() {
+        return "Extends the " + CorrelationVector.HEADER_NAME + " header of the request";
+    }
+
+    private CorrelationVector extend(String header) {
+        if (header == null || header.isEmpty()) {
+            return this.factory.create();
+        }
+        try {
+            return this.factory.extend(header);
+        } catch (IllegalArgumentException e) {
+            return this.factory.create();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Receives notifications about the operations performed by a
+ * {@link CorrelationVectorFactory} and the vectors it creates. Implementations
+ * are called on the hot path and must be thread safe and cheap.
+ */
+public interface CorrelationVectorMetrics {
+
+    /**
+     * Metrics sink that ignores every notification.
+     */
+    CorrelationVectorMetrics NONE = new CorrelationVectorMetrics() {
+        @Override
+        public void onBaseGenerated(CorrelationVectorVersion version) {
+        }
+
+        @Override
+        public void onParse(CorrelationVector correlationVector) {
+        }
+
+        @Override
+        public void onParseFailure(String correlationVector) {
+        }
+
+        @Override
+        public void onExtend(CorrelationVector correlationVector) {
+        }
+
+        @Override
+        public void onSpin(CorrelationVector correlationVector) {
+        }
+
+        @Override
+        public void onIncrement(CorrelationVector correlationVector, String value) {
+        }
+
+        @Override
+        public void onTerminate(CorrelationVector correlationVector) {
+        }
+    };
+
+    /**
+     * Called when a new CV base is generated.
+     *
+     * @param version
+     *            CV version.
+     */
+    void onBaseGenerated(CorrelationVectorVersion version);
+
+    /**
+     * Called when a CV string was parsed successfully.
+     *
+     * @param correlationVector
+     *            the parsed CV.
+     */
+    void onParse(CorrelationVector correlationVector);
+
+    /**
+     * Called when a CV string could not be parsed and a brand-new CV was created
+     * instead.
+     *
+     * @param correlationVector
+     *            the CV string that could not be parsed.
+     */
+    void onParseFailure(String correlationVector);
+
+    /**
+     * Called when a CV was extended.
+     *
+     * @param correlationVector
+     *            the extended CV.
+     */
+    void onExtend(CorrelationVector correlationVector);
+
+    /**
+     * Called when the Spin operator was applied to a CV.
+     *
+     * @param correlationVector
+     *            the spun CV.
+     */
+    void onSpin(CorrelationVector correlationVector);
+
+    /**
+     * Called when a CV was incremented.
+     *
+     * @param correlationVector
+     *            the incremented CV.
+     * @param value
+     *            the value produced by the increment. The current value of the
+     *            CV can already differ when it is incremented concurrently.
+     */
+    void onIncrement(CorrelationVector correlationVector, String value);
+
+    /**
+     * Called when an operation terminated a CV because it would have become
+     * oversized.
+     *
+     * @param correlationVector
+     *            the terminated CV.
+     */
+    void onTerminate(CorrelationVector correlationVector);
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Values of a {@link StripedCorrelationVectorMetrics} sink at a point in time.
+ */
+public final class CorrelationVectorMetricsSnapshot {
+
+    private final long baseGenerated;
+    private final long parsed;
+    private final long receivedTerminated;
+    private final long parseFailures;
+    private final long extended;
+    private final long spun;
+    private final long incremented;
+    private final long terminated;
+    private final long[] lengths;
+    private final long[] depths;
+
+    CorrelationVectorMetricsSnapshot(long baseGenerated, long parsed, long receivedTerminated, long parseFailures,
+            long extended, long spun, long incremented, long terminated, long[] lengths, long[] depths) {
+        this.baseGenerated = baseGenerated;
+        this.parsed = parsed;
+        this.receivedTerminated = receivedTerminated;
+        this.parseFailures = parseFailures;
+        this.extended = extended;
+        this.spun = spun;
+        this.incremented = incremented;
+        this.terminated = terminated;
+        this.lengths = lengths;
+        this.depths = depths;
+    }
+
+    /**
+     * Gets the number of new CV bases generated.
+     *
+     * @return base generation count.
+     */
+    public long getBaseGeneratedCount() {
+        return this.baseGenerated;
+    }
+
+    /**
+     * Gets the number of vectors parsed successfully, including the terminated
+     * ones.
+     *
+     * @return parse count.
+     */
+    public long getParseCount() {
+        return this.parsed;
+    }
+
+    /**
+     * Gets the number of terminated vectors, ending with the terminator, that
+     * were parsed. Extending or spinning a terminated value parses it, so those
+     * calls are counted here as well.
+     *
+     * @return received terminated vector count.
+     */
+    public long getReceivedTerminatedCount() {
+        return this.receivedTerminated;
+    }
+
+    /**
+     * Gets the number of values that could not be parsed and were replaced by a
+     * brand-new vector.
+     *
+     * @return parse failure count.
+     */
+    public long getParseFailureCount() {
+        return this.parseFailures;
+    }
+
+    /**
+     * Gets the number of vectors extended.
+     *
+     * @return extend count.
+     */
+    public long getExtendCount() {
+        return this.extended;
+    }
+
+    /**
+     * Gets the number of vectors the Spin operator was applied to.
+     *
+     * @return spin count.
+     */
+    public long getSpinCount() {
+        return this.spun;
+    }
+
+    /**
+     * Gets the number of increments.
+     *
+     * @return increment count.
+     */
+    public long getIncrementCount() {
+        return this.incremented;
+    }
+
+    /**
+     * Gets the number of vectors terminated by an extend, spin or increment
+     * because they would have become oversized.
+     *
+     * @return termination count.
+     */
+    public long getTerminateCount() {
+        return this.terminated;
+    }
+
+    /**
+     * Gets the histogram of the length of the parsed, extended and spun vectors.
+     * Index i holds the number of vectors of i characters; the last index also
+     * counts the longer vectors.
+     *
+     * @return the length histogram.
+     */
+    public long[] getLengthHistogram() {
+        return this.lengths.clone();
+    }
+
+    /**
+     * Gets the histogram of the depth, i.e. the number of elements following the
+     * base, of the parsed, extended and spun vectors. The last index also counts
+     * the deeper vectors.
+     *
+     * @return the depth histogram.
+     */
+    public long[] getDepthHistogram() {
+        return this.depths.clone();
+    }
+
+    /**
+     * Gets the counters by name, for export to a monitoring system.
+     *
+     * @return the counters.
+     */
+    public Map<String, Long> getCounters() {
+        final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+        counters.put("cv.base.generated", this.baseGenerated);
+        counters.put("cv.parse", this.parsed);
+        counters.put("cv.parse.terminated", this.receivedTerminated);
+        counters.put("cv.parse.failure", this.parseFailures);
+        counters.put("cv.extend", this.extended);
+        counters.put("cv.spin", this.spun);
+        counters.put("cv.increment", this.incremented);
+        counters.put("cv.terminate", this.terminated);
+        return Collections.unmodifiableMap(counters);
+    }
+
+    @Override
+    public String toString() {
+        return this.getCounters() + " lengths=" + Arrays.toString(this.lengths) + " depths="
+                + Arrays.toString(this.depths);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Operations recorded by a {@link CorrelationVectorRecorder}.
+ */
+public enum CorrelationVectorOperation {
+
+    /**
+     * A vector was extended.
+     */
+    Extend,
+    /**
+     * The Spin operator was applied to a vector.
+     */
+    Spin,
+    /**
+     * A vector was incremented.
+     */
+    Increment,
+    /**
+     * A vector was terminated because it would have become oversized.
+     */
+    Terminate;
+}
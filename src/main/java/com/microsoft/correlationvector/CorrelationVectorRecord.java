@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * An operation read back from a file written by a
+ * {@link CorrelationVectorRecorder}.
+ */
+public final class CorrelationVectorRecord {
+
+    private final long timestamp;
+    private final CorrelationVectorOperation operation;
+    private final String value;
+    private final boolean truncated;
+
+    CorrelationVectorRecord(long timestamp, CorrelationVectorOperation operation, String value, boolean truncated) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.value = value;
+        this.truncated = truncated;
+    }
+
+    /**
+     * Gets the time of the operation in milliseconds since epoch.
+     *
+     * @return time of the operation.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Gets the recorded operation.
+     *
+     * @return the operation.
+     */
+    public CorrelationVectorOperation getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Gets the value of the correlation vector after the operation.
+     *
+     * @return CV in string.
+     */
+    public String getValue() {
+        return this.value;
+    }
+
+    /**
+     * Gets a value indicating whether the vector was too long to be recorded and
+     * only the start of its base was kept.
+     *
+     * @return true if the value is truncated.
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    @Override
+    public String toString() {
+        return this.timestamp + " " + this.operation + " " + this.value + (this.truncated ? "..." : "");
+    }
+}
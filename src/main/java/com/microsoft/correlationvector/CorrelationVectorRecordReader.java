@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the operations from a file written by a
+ * {@link CorrelationVectorRecorder}.
+ */
+public final class CorrelationVectorRecordReader implements Closeable {
+
+    private static final int RECORDS_PER_READ = 256;
+    private static final CorrelationVectorOperation[] OPERATIONS = CorrelationVectorOperation.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer
+            .allocate(RECORDS_PER_READ * CorrelationVectorRecorder.SLOT_SIZE);
+    private final byte[] slot = new byte[CorrelationVectorRecorder.SLOT_SIZE];
+
+    /**
+     * Opens a record file.
+     *
+     * @param file
+     *            the record file.
+     * @throws IOException
+     *             if the file can not be read or is not a record file.
+     */
+    public CorrelationVectorRecordReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        final ByteBuffer header = ByteBuffer.allocate(CorrelationVectorRecorder.FILE_HEADER_SIZE);
+        while (header.hasRemaining() && this.channel.read(header) >= 0) {
+            // Reads the whole header.
+        }
+        header.flip();
+        if (header.remaining() != CorrelationVectorRecorder.FILE_HEADER_SIZE
+                || header.getInt() != CorrelationVectorRecorder.FILE_MAGIC
+                || header.getInt() != CorrelationVectorRecorder.SLOT_SIZE) {
+            this.channel.close();
+            throw new IOException("Not a correlation vector record file: " + file);
+        }
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the next record, or null at the end of the file.
+     * @throws IOException
+     *             if the file can not be read or is corrupted.
+     */
+    public CorrelationVectorRecord read() throws IOException {
+        if (this.buffer.remaining() < CorrelationVectorRecorder.SLOT_SIZE) {
+            this.buffer.compact();
+            while (this.buffer.position() < CorrelationVectorRecorder.SLOT_SIZE && this.channel.read(this.buffer) >= 0) {
+                // Reads at least one whole record.
+            }
+            this.buffer.flip();
+            if (this.buffer.remaining() < CorrelationVectorRecorder.SLOT_SIZE) {
+                return null;
+            }
+        }
+
+        this.buffer.get(this.slot);
+        long timestamp = 0;
+        for (int i = 0; i < 8; i++) {
+            timestamp = (timestamp << 8) | (this.slot[i] & 0xFF);
+        }
+        final int flags = this.slot[CorrelationVectorRecorder.OPERATION_OFFSET] & 0xFF;
+        final int operation = flags & ~CorrelationVectorRecorder.TRUNCATED_FLAG;
+        final int length = this.slot[CorrelationVectorRecorder.LENGTH_OFFSET] & 0xFF;
+        if (operation >= OPERATIONS.length || length > CorrelationVectorRecorder.MAX_VALUE_LENGTH) {
+            throw new IOException("Corrupted correlation vector record");
+        }
+
+        return new CorrelationVectorRecord(timestamp, OPERATIONS[operation],
+                new String(this.slot, CorrelationVectorRecorder.VALUE_OFFSET, length, StandardCharsets.US_ASCII),
+                (flags & CorrelationVectorRecorder.TRUNCATED_FLAG) != 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,510 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records correlation vector operations into a preallocated ring buffer that a
+ * background thread flushes to rolling binary files, readable with
+ * {@link CorrelationVectorRecordReader}.
+ * <p/>
+ * Recording copies the timestamp, the operation and the bytes of the vector
+ * into a fixed-size slot and never allocates or blocks: when the ring buffer is
+ * full, the operation is dropped and counted. Any number of threads can record
+ * concurrently.
+ * <p/>
+ * The recorder is a {@link CorrelationVectorMetrics} sink, so a factory built
+ * with it records its extend, spin, increment and terminate operations. An
+ * increment is recorded with the value it produced, even if the vector was
+ * incremented again concurrently. Factories built without it pay nothing.
+ */
+public final class CorrelationVectorRecorder implements CorrelationVectorMetrics, Closeable {
+
+    static final int FILE_MAGIC = 0x43565231;
+    static final int FILE_HEADER_SIZE = 8;
+    static final String FILE_SUFFIX = ".cvr";
+
+    static final int SLOT_SIZE = 144;
+    static final int OPERATION_OFFSET = 8;
+    static final int LENGTH_OFFSET = 9;
+    static final int VALUE_OFFSET = 10;
+    static final int MAX_VALUE_LENGTH = 128;
+    static final int TRUNCATED_FLAG = 0x80;
+
+    private final int capacity;
+    private final int mask;
+    private final byte[] slots;
+    private final AtomicLongArray published;
+
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Path directory;
+    private final String filePrefix;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final long flushIntervalNanos;
+
+    private final Thread flusher;
+    private volatile boolean closed;
+    private volatile IOException lastFailure;
+
+    // Only accessed by the flusher thread.
+    private final ByteBuffer[] batch;
+    private FileChannel channel;
+    private long fileBytes;
+    private int fileIndex;
+
+    /**
+     * Creates a new builder initialized with the default configuration.
+     *
+     * @param directory
+     *            the directory of the record files.
+     * @return a new builder.
+     */
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    private CorrelationVectorRecorder(Builder builder) throws IOException {
+        this.capacity = builder.capacity;
+        this.mask = builder.capacity - 1;
+        this.slots = new byte[builder.capacity * SLOT_SIZE];
+        this.published = new AtomicLongArray(builder.capacity);
+        for (int i = 0; i < builder.capacity; i++) {
+            this.published.set(i, -1);
+        }
+
+        this.directory = builder.directory;
+        this.filePrefix = builder.filePrefix;
+        this.maxFileBytes = builder.maxFileBytes;
+        this.maxFiles = builder.maxFiles;
+        this.flushIntervalNanos = builder.flushIntervalNanos;
+
+        this.batch = new ByteBuffer[] { ByteBuffer.wrap(this.slots), ByteBuffer.wrap(this.slots) };
+
+        Files.createDirectories(this.directory);
+        final List<Path> existing = listFiles(this.directory, this.filePrefix);
+        this.fileIndex = existing.isEmpty() ? 0 : fileIndex(existing.get(existing.size() - 1), this.filePrefix) + 1;
+
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushUntilClosed();
+            }
+        }, "cv-recorder-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Records an operation. The operation is dropped if the ring buffer is full.
+     *
+     * @param operation
+     *            the operation.
+     * @param correlationVector
+     *            the CV after the operation.
+     */
+    public void record(CorrelationVectorOperation operation, CorrelationVector correlationVector) {
+        this.record(operation, correlationVector, null);
+    }
+
+    /**
+     * Records an operation with the given value, or with the current value of
+     * the given vector if the value is null.
+     */
+    private void record(CorrelationVectorOperation operation, CorrelationVector correlationVector, String value) {
+
+        long sequence;
+        do {
+            sequence = this.cursor.get();
+            if (sequence - this.flushed.get() >= this.capacity) {
+                this.dropped.incrementAndGet();
+                return;
+            }
+        } while (!this.cursor.compareAndSet(sequence, sequence + 1));
+
+        final int index = (int) sequence & this.mask;
+        final int offset = index * SLOT_SIZE;
+
+        final long timestamp = System.currentTimeMillis();
+        for (int i = 7; i >= 0; i--) {
+            this.slots[offset + 7 - i] = (byte) (timestamp >>> (i * 8));
+        }
+
+        int length = value == null ? correlationVector.writeTo(this.slots, offset + VALUE_OFFSET, MAX_VALUE_LENGTH)
+                : this.write(value, offset + VALUE_OFFSET);
+        int flags = 0;
+        if (length < 0) {
+            length = Math.min(value == null ? correlationVector.getBaseVector().length()
+                    : value.lastIndexOf(CorrelationVector.CV_DELIMITER), MAX_VALUE_LENGTH);
+            flags = TRUNCATED_FLAG;
+        }
+        this.slots[offset + OPERATION_OFFSET] = (byte) (operation.ordinal() | flags);
+        this.slots[offset + LENGTH_OFFSET] = (byte) length;
+
+        this.published.lazySet(index, sequence);
+    }
+
+    /**
+     * Writes the given value to the slots as ASCII bytes, or only the start of
+     * its base if it is longer than {@value #MAX_VALUE_LENGTH} characters.
+     *
+     * @return the number of bytes written, or -1 if the value was cut.
+     */
+    private int write(String value, int offset) {
+        final int length = value.length();
+        if (length > MAX_VALUE_LENGTH) {
+            final int cut = Math.min(value.lastIndexOf(CorrelationVector.CV_DELIMITER), MAX_VALUE_LENGTH);
+            for (int i = 0; i < cut; i++) {
+                this.slots[offset + i] = (byte) value.charAt(i);
+            }
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            this.slots[offset + i] = (byte) value.charAt(i);
+        }
+        return length;
+    }
+
+    /**
+     * Gets the number of operations dropped because the ring buffer was full.
+     *
+     * @return number of dropped operations.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Gets the last error raised while writing the record files, if any. Records
+     * that could not be written are dropped.
+     *
+     * @return the last write error, or null.
+     */
+    public IOException getLastFailure() {
+        return this.lastFailure;
+    }
+
+    /**
+     * Stops the flusher thread after it has written every recorded operation and
+     * closes the current record file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        LockSupport.unpark(this.flusher);
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.lastFailure != null) {
+            throw this.lastFailure;
+        }
+    }
+
+    @Override
+    public void onBaseGenerated(CorrelationVectorVersion version) {
+    }
+
+    @Override
+    public void onParse(CorrelationVector correlationVector) {
+    }
+
+    @Override
+    public void onParseFailure(String correlationVector) {
+    }
+
+    @Override
+    public void onExtend(CorrelationVector correlationVector) {
+        this.record(CorrelationVectorOperation.Extend, correlationVector);
+    }
+
+    @Override
+    public void onSpin(CorrelationVector correlationVector) {
+        this.record(CorrelationVectorOperation.Spin, correlationVector);
+    }
+
+    @Override
+    public void onIncrement(CorrelationVector correlationVector, String value) {
+        this.record(CorrelationVectorOperation.Increment, correlationVector, value);
+    }
+
+    @Override
+    public void onTerminate(CorrelationVector correlationVector) {
+        this.record(CorrelationVectorOperation.Terminate, correlationVector);
+    }
+
+    private void flushUntilClosed() {
+        while (!this.closed) {
+            if (!this.flush()) {
+                LockSupport.parkNanos(this, this.flushIntervalNanos);
+            }
+        }
+        while (this.flush()) {
+            // Drains the operations recorded before the recorder was closed.
+        }
+
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                this.lastFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Writes the contiguous run of published slots following the last flushed
+     * slot with a single gathering write.
+     *
+     * @return true if any slot was flushed.
+     */
+    private boolean flush() {
+        final long start = this.flushed.get();
+        final long limit = this.cursor.get();
+        long end = start;
+        while (end < limit && this.published.get((int) end & this.mask) == end) {
+            end++;
+        }
+        if (end == start) {
+            return false;
+        }
+
+        final int count = (int) (end - start);
+        final int first = (int) start & this.mask;
+        final int headCount = Math.min(count, this.capacity - first);
+        this.batch[0].limit((first + headCount) * SLOT_SIZE).position(first * SLOT_SIZE);
+        this.batch[1].limit((count - headCount) * SLOT_SIZE).position(0);
+
+        try {
+            this.ensureFile((long) count * SLOT_SIZE);
+            long remaining = (long) count * SLOT_SIZE;
+            while (remaining > 0) {
+                remaining -= this.channel.write(this.batch);
+            }
+            this.fileBytes += (long) count * SLOT_SIZE;
+        } catch (IOException e) {
+            this.lastFailure = e;
+            this.dropped.addAndGet(count);
+        }
+
+        this.flushed.set(end);
+        return true;
+    }
+
+    /**
+     * Opens the first record file, or the next one if the current file can not
+     * hold the given number of bytes, and deletes the files beyond the retention
+     * limit.
+     *
+     * @param bytes
+     *            the number of bytes about to be written.
+     */
+    private void ensureFile(long bytes) throws IOException {
+        if (this.channel != null
+                && (this.fileBytes + bytes <= this.maxFileBytes || this.fileBytes == FILE_HEADER_SIZE)) {
+            return;
+        }
+
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+
+        final Path file = this.directory.resolve(fileName(this.filePrefix, this.fileIndex));
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(FILE_MAGIC).putInt(SLOT_SIZE).flip();
+        while (header.hasRemaining()) {
+            this.channel.write(header);
+        }
+        this.fileBytes = FILE_HEADER_SIZE;
+
+        if (this.fileIndex >= this.maxFiles) {
+            Files.deleteIfExists(this.directory.resolve(fileName(this.filePrefix, this.fileIndex - this.maxFiles)));
+        }
+        this.fileIndex++;
+    }
+
+    /**
+     * Lists the record files with the given prefix in the order they were
+     * written.
+     *
+     * @param directory
+     *            the directory of the record files.
+     * @param filePrefix
+     *            the prefix of the record files.
+     * @return the record files.
+     * @throws IOException
+     *             if the directory can not be read.
+     */
+    public static List<Path> listFiles(Path directory, final String filePrefix) throws IOException {
+        final List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, filePrefix + ".*" + FILE_SUFFIX)) {
+            for (final Path file : stream) {
+                if (fileIndex(file, filePrefix) >= 0) {
+                    files.add(file);
+                }
+            }
+        }
+
+        Collections.sort(files, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                return Integer.compare(fileIndex(a, filePrefix), fileIndex(b, filePrefix));
+            }
+        });
+        return files;
+    }
+
+    private static String fileName(String filePrefix, int index) {
+        return filePrefix + "." + index + FILE_SUFFIX;
+    }
+
+    private static int fileIndex(Path file, String filePrefix) {
+        final String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(
+                    name.substring(filePrefix.length() + 1, name.length() - FILE_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Builder of {@link CorrelationVectorRecorder} instances.
+     */
+    public static final class Builder {
+
+        private final Path directory;
+        private int capacity = 1 << 16;
+        private String filePrefix = "correlation-vectors";
+        private long maxFileBytes = 64L << 20;
+        private int maxFiles = 10;
+        private long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private Builder(Path directory) {
+            if (directory == null) {
+                throw new IllegalArgumentException("directory can not be null");
+            }
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the number of slots of the ring buffer, rounded up to a power of
+         * two. Defaults to 65536.
+         *
+         * @param value
+         *            number of slots.
+         * @return this builder.
+         */
+        public Builder capacity(int value) {
+            if (value <= 0 || value > (1 << 24)) {
+                throw new IllegalArgumentException("capacity must be between 1 and " + (1 << 24));
+            }
+            this.capacity = value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+            return this;
+        }
+
+        /**
+         * Sets the prefix of the record file names. Defaults to
+         * "correlation-vectors".
+         *
+         * @param value
+         *            file prefix.
+         * @return this builder.
+         */
+        public Builder filePrefix(String value) {
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("filePrefix can not be null or empty");
+            }
+            this.filePrefix = value;
+            return this;
+        }
+
+        /**
+         * Sets the size after which a new record file is started. Defaults to 64
+         * MB.
+         *
+         * @param value
+         *            maximum file size in bytes.
+         * @return this builder.
+         */
+        public Builder maxFileBytes(long value) {
+            if (value < FILE_HEADER_SIZE + SLOT_SIZE) {
+                throw new IllegalArgumentException("maxFileBytes must hold at least one record");
+            }
+            this.maxFileBytes = value;
+            return this;
+        }
+
+        /**
+         * Sets the number of record files to keep. Defaults to 10.
+         *
+         * @param value
+         *            number of files.
+         * @return this builder.
+         */
+        public Builder maxFiles(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("maxFiles must be positive");
+            }
+            this.maxFiles = value;
+            return this;
+        }
+
+        /**
+         * Sets how long the flusher waits when there is nothing to flush. Defaults
+         * to 100 milliseconds.
+         *
+         * @param value
+         *            flush interval.
+         * @param unit
+         *            unit of the flush interval.
+         * @return this builder.
+         */
+        public Builder flushInterval(long value, TimeUnit unit) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("flushInterval must be positive");
+            }
+            this.flushIntervalNanos = unit.toNanos(value);
+            return this;
+        }
+
+        /**
+         * Creates a recorder with the current configuration and starts its flusher
+         * thread.
+         *
+         * @return a new recorder.
+         * @throws IOException
+         *             if the directory can not be created or read.
+         */
+        public CorrelationVectorRecorder build() throws IOException {
+            return new CorrelationVectorRecorder(this);
+        }
+    }
+}
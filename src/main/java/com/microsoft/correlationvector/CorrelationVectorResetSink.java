@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Receives the mappings recorded by the Reset operator. A vector that would
+ * become oversized is reset to a short base made of its first element and a
+ * sort value, and the vectors of the reset base stand for the vectors of the
+ * previous base. Telemetry pipelines log the mapping to rebuild the causality
+ * across the reset.
+ */
+public interface CorrelationVectorResetSink {
+
+    /**
+     * Called once for each reset.
+     *
+     * @param previousBase
+     *            the base that could no longer be extended or incremented.
+     * @param resetBase
+     *            the base that replaces it.
+     */
+    void onReset(String previousBase, String resetBase);
+}
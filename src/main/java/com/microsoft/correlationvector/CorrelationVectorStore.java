@@ -0,0 +1,578 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps named correlation vectors of long-running workflows in a
+ * memory-mapped file, so that a workflow restarted after a crash or a deploy
+ * continues its vector instead of reusing extensions already sent.
+ * <p/>
+ * The extension of a stored vector lives in the mapped file: an increment is a
+ * single atomic update of the page cache, which survives the crash of the
+ * process without any system call. A background thread forces the file to
+ * the disk at the checkpoint interval, bounding what a crash of the machine
+ * can lose. Vectors that are reset by the
+ * {@link CorrelationVectorFactory.Builder#resetSink(CorrelationVectorResetSink)
+ * Reset operator} continue in memory only.
+ * <p/>
+ * The store holds an exclusive lock of its file until it is closed, so that two
+ * processes never increment the same stored vectors. Closing the store
+ * terminates the vectors it handed out, as another store may then open the
+ * file. Stored vectors terminated for being oversized stay terminated in the
+ * file.
+ */
+public final class CorrelationVectorStore implements Closeable {
+
+    static final int FILE_MAGIC = 0x43565331;
+    static final int FILE_HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 256;
+
+    static final int EXTENSION_OFFSET = 0;
+    static final int FLAGS_OFFSET = 4;
+    static final int NAME_LENGTH_OFFSET = 5;
+    static final int BASE_LENGTH_OFFSET = 6;
+    static final int NAME_OFFSET = 8;
+    static final int BASE_OFFSET = 128;
+    static final int MAX_NAME_LENGTH = BASE_OFFSET - NAME_OFFSET;
+    static final int MAX_BASE_LENGTH = 127;
+
+    static final int IN_USE_FLAG = 1;
+    static final int IMMUTABLE_FLAG = 2;
+    static final int V2_FLAG = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CorrelationVectorFactory factory;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long checkpointIntervalNanos;
+
+    // Guarded by this.
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final BitSet usedSlots;
+
+    private final Thread checkpointer;
+    private volatile boolean closed;
+    private volatile IOException lastFailure;
+
+    /**
+     * Creates a new builder initialized with the default configuration.
+     *
+     * @param file
+     *            the file of the store.
+     * @return a new builder.
+     */
+    public static Builder builder(Path file) {
+        return new Builder(file);
+    }
+
+    private CorrelationVectorStore(Builder builder) throws IOException {
+        this.factory = builder.factory;
+        this.checkpointIntervalNanos = builder.checkpointIntervalNanos;
+
+        this.channel = FileChannel.open(builder.file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            lock(this.channel, builder.file);
+            final long size = this.channel.size();
+            if (size == 0) {
+                this.capacity = builder.capacity;
+                this.buffer = map(this.channel, this.capacity);
+                this.buffer.putInt(0, FILE_MAGIC);
+                this.buffer.putInt(4, SLOT_SIZE);
+                this.buffer.putInt(8, this.capacity);
+            } else {
+                this.capacity = readCapacity(this.channel, size);
+                this.buffer = map(this.channel, this.capacity);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+
+        this.usedSlots = new BitSet(this.capacity);
+        this.restore();
+
+        this.checkpointer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                checkpointUntilClosed();
+            }
+        }, "cv-store-checkpoint");
+        this.checkpointer.setDaemon(true);
+        this.checkpointer.start();
+    }
+
+    /**
+     * Locks the whole file, failing if another store, of this or another
+     * process, holds the lock.
+     */
+    private static void lock(FileChannel channel, Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException("The correlation vector store is already open: " + file);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int capacity) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                FILE_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    private static int readCapacity(FileChannel channel, long size) throws IOException {
+        final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(size, FILE_HEADER_SIZE));
+        header.order(ByteOrder.nativeOrder());
+        if (size < FILE_HEADER_SIZE || header.getInt(0) != FILE_MAGIC || header.getInt(4) != SLOT_SIZE) {
+            throw new IOException("Not a correlation vector store");
+        }
+        final int capacity = header.getInt(8);
+        if (capacity <= 0 || size < FILE_HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+            throw new IOException("Truncated correlation vector store");
+        }
+        return capacity;
+    }
+
+    /**
+     * Loads the vectors of the slots in use. Slots that can not be read, e.g.
+     * because of a crash of the machine in the middle of a write, are freed.
+     */
+    private void restore() {
+        for (int slot = 0; slot < this.capacity; slot++) {
+            final int offset = offset(slot);
+            final int flags = this.buffer.get(offset + FLAGS_OFFSET);
+            if ((flags & IN_USE_FLAG) == 0) {
+                continue;
+            }
+            final int nameLength = this.buffer.get(offset + NAME_LENGTH_OFFSET) & 0xFF;
+            final int baseLength = this.buffer.get(offset + BASE_LENGTH_OFFSET) & 0xFF;
+            if (nameLength == 0 || nameLength > MAX_NAME_LENGTH || baseLength == 0
+                    || baseLength > MAX_BASE_LENGTH) {
+                this.buffer.put(offset + FLAGS_OFFSET, (byte) 0);
+                continue;
+            }
+
+            final byte[] name = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                name[i] = this.buffer.get(offset + NAME_OFFSET + i);
+            }
+            final char[] base = new char[baseLength];
+            for (int i = 0; i < baseLength; i++) {
+                base[i] = (char) this.buffer.get(offset + BASE_OFFSET + i);
+            }
+            final String key = new String(name, UTF_8);
+            if (this.entries.containsKey(key)) {
+                this.buffer.put(offset + FLAGS_OFFSET, (byte) 0);
+                continue;
+            }
+
+            final CorrelationVectorVersion version = (flags & V2_FLAG) != 0 ? CorrelationVectorVersion.V2
+                    : CorrelationVectorVersion.V1;
+            final MappedSegment segment = new MappedSegment(this, new String(base), this.buffer, offset, version);
+            this.entries.put(key, new Entry(slot,
+                    new CorrelationVector(this.factory, segment, version, (flags & IMMUTABLE_FLAG) != 0)));
+            this.usedSlots.set(slot);
+        }
+    }
+
+    /**
+     * Gets the vector stored under the given name, e.g. the vector restored from
+     * the previous run of the workflow.
+     *
+     * @param name
+     *            the name of the vector.
+     * @return the stored CV, or null if there is none.
+     */
+    public synchronized CorrelationVector get(String name) {
+        final Entry entry = this.entries.get(name);
+        return entry == null ? null : entry.vector;
+    }
+
+    /**
+     * Gets the vector stored under the given name, or stores a new vector
+     * created by the factory of this store.
+     *
+     * @param name
+     *            the name of the vector.
+     * @return the stored CV.
+     * @throws IllegalStateException
+     *             if the store is full.
+     */
+    public synchronized CorrelationVector getOrCreate(String name) {
+        final Entry entry = this.entries.get(name);
+        return entry == null ? this.put(name, this.factory.create()) : entry.vector;
+    }
+
+    /**
+     * Stores a copy of the given vector under the given name. The vector
+     * previously stored under the name, if any, is detached from the store and
+     * continues in memory only.
+     *
+     * @param name
+     *            the name of the vector, at most 120 bytes in UTF-8.
+     * @param correlationVector
+     *            the CV to store, whose base must be ASCII.
+     * @return the stored CV, to increment instead of the given CV.
+     * @throws IllegalStateException
+     *             if the store is full.
+     */
+    public synchronized CorrelationVector put(String name, CorrelationVector correlationVector) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name can not be null or empty");
+        }
+        final byte[] encodedName = name.getBytes(UTF_8);
+        if (encodedName.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("name can not be longer than " + MAX_NAME_LENGTH + " bytes");
+        }
+        final CorrelationVector.Segment current = correlationVector.segment();
+        final String base = current.base;
+        if (base.length() > MAX_BASE_LENGTH) {
+            throw new IllegalArgumentException("base vector can not be longer than " + MAX_BASE_LENGTH + " characters");
+        }
+        for (int i = 0; i < base.length(); i++) {
+            if (base.charAt(i) > 0x7F) {
+                // The file holds one byte per character of the base.
+                throw new IllegalArgumentException("base vector must be ASCII: " + base);
+            }
+        }
+        this.ensureOpen();
+
+        final Entry previous = this.entries.remove(name);
+        final int slot;
+        if (previous != null) {
+            slot = previous.slot;
+            detach(previous.vector);
+        } else {
+            slot = this.usedSlots.nextClearBit(0);
+            if (slot >= this.capacity) {
+                throw new IllegalStateException("The correlation vector store is full");
+            }
+        }
+
+        // The slot is marked in use last, so that a crash in the middle of the
+        // write leaves it free.
+        final int offset = offset(slot);
+        this.buffer.put(offset + FLAGS_OFFSET, (byte) 0);
+        this.buffer.put(offset + NAME_LENGTH_OFFSET, (byte) encodedName.length);
+        this.buffer.put(offset + BASE_LENGTH_OFFSET, (byte) base.length());
+        for (int i = 0; i < encodedName.length; i++) {
+            this.buffer.put(offset + NAME_OFFSET + i, encodedName[i]);
+        }
+        for (int i = 0; i < base.length(); i++) {
+            this.buffer.put(offset + BASE_OFFSET + i, (byte) base.charAt(i));
+        }
+        final CorrelationVectorVersion version = correlationVector.getVersion();
+        final boolean immutable = correlationVector.isImmutable();
+        OffHeapAtomics.setIntVolatile(this.buffer, offset + EXTENSION_OFFSET, current.extension());
+        this.buffer.put(offset + FLAGS_OFFSET, (byte) (IN_USE_FLAG | (immutable ? IMMUTABLE_FLAG : 0)
+                | (version == CorrelationVectorVersion.V2 ? V2_FLAG : 0)));
+
+        final CorrelationVector stored = new CorrelationVector(this.factory,
+                new MappedSegment(this, base, this.buffer, offset, version), version, immutable);
+        this.entries.put(name, new Entry(slot, stored));
+        this.usedSlots.set(slot);
+        return stored;
+    }
+
+    /**
+     * Removes the vector stored under the given name. The vector is detached
+     * from the store and continues in memory only.
+     *
+     * @param name
+     *            the name of the vector.
+     * @return true if a vector was removed.
+     */
+    public synchronized boolean remove(String name) {
+        final Entry entry = this.entries.remove(name);
+        if (entry == null) {
+            return false;
+        }
+        this.ensureOpen();
+        detach(entry.vector);
+        this.buffer.put(offset(entry.slot) + FLAGS_OFFSET, (byte) 0);
+        this.usedSlots.clear(entry.slot);
+        return true;
+    }
+
+    /**
+     * Gets the number of stored vectors.
+     *
+     * @return the number of stored CVs.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the maximum number of stored vectors.
+     *
+     * @return the number of slots of the file.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Forces the stored vectors to the disk, without waiting for the next
+     * checkpoint.
+     *
+     * @throws IOException
+     *             if the file can not be written.
+     */
+    public void checkpoint() throws IOException {
+        try {
+            this.buffer.force();
+        } catch (RuntimeException e) {
+            // Java 10 and later report the I/O errors of force as unchecked.
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Gets the last error raised by a background checkpoint, if any.
+     *
+     * @return the last checkpoint error, or null.
+     */
+    public IOException getLastFailure() {
+        return this.lastFailure;
+    }
+
+    /**
+     * Terminates the stored vectors, stops the checkpoint thread, forces the
+     * stored vectors to the disk and releases the lock of the file. Another store
+     * may then open the file, so the stored vectors are detached from it and
+     * their next increment terminates them, or resets them if the factory resets
+     * vectors.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.closed = true;
+            for (final Entry entry : this.entries.values()) {
+                final CorrelationVector.Segment current = entry.vector.segment();
+                if (current instanceof MappedSegment) {
+                    final int extension = ((MappedSegment) current).fence();
+                    entry.vector.replaceSegment(current,
+                            new CorrelationVector.Segment(current.base, extension, extension));
+                }
+            }
+        }
+        LockSupport.unpark(this.checkpointer);
+        try {
+            this.checkpointer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.checkpoint();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void checkpointUntilClosed() {
+        while (!this.closed) {
+            LockSupport.parkNanos(this, this.checkpointIntervalNanos);
+            try {
+                this.checkpoint();
+            } catch (IOException e) {
+                this.lastFailure = e;
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("The correlation vector store is closed");
+        }
+    }
+
+    /**
+     * Moves the extension of the given vector from the file back to memory,
+     * unless the vector was reset in the meantime.
+     */
+    private static void detach(CorrelationVector correlationVector) {
+        final CorrelationVector.Segment current = correlationVector.segment();
+        if (current instanceof MappedSegment) {
+            final int extension = ((MappedSegment) current).fence();
+            correlationVector.replaceSegment(current,
+                    new CorrelationVector.Segment(current.base, extension, correlationVector.getVersion()));
+        }
+    }
+
+    private static int offset(int slot) {
+        return FILE_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static final class Entry {
+
+        final int slot;
+        final CorrelationVector vector;
+
+        Entry(int slot, CorrelationVector vector) {
+            this.slot = slot;
+            this.vector = vector;
+        }
+    }
+
+    /**
+     * Segment whose extension is an int of the mapped file. Once fenced, the
+     * segment no longer updates the file and reports itself full, so that the
+     * increments still holding it move on to the segment that replaced it.
+     */
+    private static final class MappedSegment extends CorrelationVector.Segment {
+
+        private final Object lock;
+        private final MappedByteBuffer buffer;
+        private final int index;
+        private final int flagsIndex;
+        // Set with the lock held.
+        private volatile boolean fenced;
+
+        MappedSegment(Object lock, String base, MappedByteBuffer buffer, int offset,
+                CorrelationVectorVersion version) {
+            super(base, 0, version);
+            this.lock = lock;
+            this.buffer = buffer;
+            this.index = offset + EXTENSION_OFFSET;
+            this.flagsIndex = offset + FLAGS_OFFSET;
+        }
+
+        /**
+         * Stops the updates of the file by this segment.
+         *
+         * @return the extension in the file.
+         */
+        int fence() {
+            this.fenced = true;
+            return OffHeapAtomics.getIntVolatile(this.buffer, this.index);
+        }
+
+        @Override
+        int extension() {
+            return this.fenced ? this.maxExtension : OffHeapAtomics.getIntVolatile(this.buffer, this.index);
+        }
+
+        @Override
+        boolean compareAndSet(int expect, int update) {
+            return !this.fenced && OffHeapAtomics.compareAndSetInt(this.buffer, this.index, expect, update);
+        }
+
+        @Override
+        void terminate() {
+            synchronized (this.lock) {
+                if (!this.fenced) {
+                    this.buffer.put(this.flagsIndex, (byte) (this.buffer.get(this.flagsIndex) | IMMUTABLE_FLAG));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link CorrelationVectorStore}.
+     */
+    public static final class Builder {
+
+        private final Path file;
+        private int capacity = 1024;
+        private long checkpointIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private CorrelationVectorFactory factory = CorrelationVectorFactory.getDefault();
+
+        private Builder(Path file) {
+            if (file == null) {
+                throw new IllegalArgumentException("file can not be null");
+            }
+            this.file = file;
+        }
+
+        /**
+         * Sets the number of vectors a new file can hold. An existing file keeps
+         * its capacity. Defaults to 1024.
+         *
+         * @param value
+         *            number of slots.
+         * @return this builder.
+         */
+        public Builder capacity(int value) {
+            if (value <= 0 || value > (1 << 22)) {
+                throw new IllegalArgumentException("capacity must be between 1 and " + (1 << 22));
+            }
+            this.capacity = value;
+            return this;
+        }
+
+        /**
+         * Sets how often the stored vectors are forced to the disk. Defaults to 1
+         * second.
+         *
+         * @param value
+         *            checkpoint interval.
+         * @param unit
+         *            unit of the checkpoint interval.
+         * @return this builder.
+         */
+        public Builder checkpointInterval(long value, TimeUnit unit) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("checkpointInterval must be positive");
+            }
+            this.checkpointIntervalNanos = unit.toNanos(value);
+            return this;
+        }
+
+        /**
+         * Sets the factory of the new and restored vectors. Defaults to the default
+         * factory.
+         *
+         * @param value
+         *            factory.
+         * @return this builder.
+         */
+        public Builder factory(CorrelationVectorFactory value) {
+            if (value == null) {
+                throw new IllegalArgumentException("factory can not be null");
+            }
+            this.factory = value;
+            return this;
+        }
+
+        /**
+         * Opens the store, restoring the vectors of an existing file, and starts
+         * its checkpoint thread.
+         *
+         * @return a new store.
+         * @throws IOException
+         *             if the file can not be opened or is not a store.
+         */
+        public CorrelationVectorStore build() throws IOException {
+            return new CorrelationVectorStore(this);
+        }
+    }
+}
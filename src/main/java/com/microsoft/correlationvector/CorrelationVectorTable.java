@@ -0,0 +1,481 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of correlation vectors stored outside of the Java heap, for processes
+ * holding a vector for each of millions of long-lived entities such as
+ * connections.
+ * <p/>
+ * Each vector takes a fixed-size slot of {@value #SLOT_SIZE} bytes in a direct
+ * buffer holding its base as ASCII, its extension and its flags, and is
+ * identified by a long handle. The slots are allocated in slabs of
+ * {@value #SLAB_SLOTS} slots as the table grows and reused once removed, so the
+ * garbage collector only sees a few buffers whatever the number of vectors.
+ * Increments are atomic updates of the extension in the slot, and values are
+ * rendered straight to the output buffers.
+ * <p/>
+ * The table is thread-safe. Vectors are added with the rules of the factory of
+ * the table, including validation and the Reset operator, but a vector of the
+ * table that becomes oversized by being incremented is terminated, and a vector
+ * whose base is not ASCII, which only a factory that does not validate accepts,
+ * is replaced with a new vector. The operations are not reported to the metrics
+ * of the factory.
+ */
+public final class CorrelationVectorTable {
+
+    /**
+     * Size of a slot in bytes.
+     */
+    public static final int SLOT_SIZE = 144;
+    /**
+     * Number of slots of a slab.
+     */
+    public static final int SLAB_SLOTS = 1 << 16;
+
+    private static final int SLAB_SHIFT = 16;
+
+    private static final int EXTENSION_OFFSET = 0;
+    private static final int GENERATION_OFFSET = 4;
+    private static final int MAX_EXTENSION_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 12;
+    // The index of the next free slot, for removed slots only. It is apart from
+    // the extension, which increments of stale handles may still update.
+    private static final int NEXT_FREE_OFFSET = 16;
+    private static final int BASE_LENGTH_OFFSET = 20;
+    private static final int BASE_OFFSET = 21;
+    private static final int MAX_BASE_LENGTH = SLOT_SIZE - BASE_OFFSET;
+
+    // The flags int holds the flags in its low byte and the low bits of the
+    // generation of the slot above them, so that a compare-and-set of the flags
+    // fails once the vector is removed, even if its slot was reused.
+    private static final int IN_USE = 1;
+    private static final int IMMUTABLE = 2;
+    private static final int V2 = 4;
+    private static final int FLAGS_GENERATION_SHIFT = 8;
+
+    private final CorrelationVectorFactory factory;
+    private final int capacity;
+    private final AtomicReferenceArray<ByteBuffer> slabs;
+    private final ThreadLocal<MutableCorrelationVector> parsers;
+
+    // Guarded by this.
+    private int allocated;
+    private int freeHead = -1;
+    private int size;
+
+    /**
+     * Initializes a new table adding vectors with the default factory.
+     *
+     * @param capacity
+     *            the maximum number of vectors of the table.
+     */
+    public CorrelationVectorTable(int capacity) {
+        this(CorrelationVectorFactory.getDefault(), capacity);
+    }
+
+    /**
+     * Initializes a new table adding vectors with the given factory.
+     *
+     * @param factory
+     *            the factory whose configuration is applied.
+     * @param capacity
+     *            the maximum number of vectors of the table.
+     */
+    public CorrelationVectorTable(final CorrelationVectorFactory factory, int capacity) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory can not be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.factory = factory;
+        this.capacity = capacity;
+        this.slabs = new AtomicReferenceArray<ByteBuffer>(((capacity - 1) >>> SLAB_SHIFT) + 1);
+        this.parsers = new ThreadLocal<MutableCorrelationVector>() {
+            @Override
+            protected MutableCorrelationVector initialValue() {
+                return new MutableCorrelationVector(factory);
+            }
+        };
+    }
+
+    /**
+     * Adds a new correlation vector of the version of the factory.
+     *
+     * @return the handle of the vector.
+     */
+    public long create() {
+        return this.add(this.parsers.get().reset());
+    }
+
+    /**
+     * Adds the extension of the given value, as
+     * {@link CorrelationVectorFactory#extend(String)} does. A new vector is
+     * created when the value is null or empty.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return the handle of the vector.
+     */
+    public long extend(CharSequence correlationVector) {
+        return this.add(this.parsers.get().extend(correlationVector));
+    }
+
+    /**
+     * Adds the given value, as {@link CorrelationVectorFactory#parse(String)}
+     * does.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return the handle of the vector.
+     */
+    public long parse(CharSequence correlationVector) {
+        final MutableCorrelationVector parser = this.parsers.get();
+        parser.reset(correlationVector);
+        return this.add(parser);
+    }
+
+    /**
+     * Adds a copy of the given vector.
+     *
+     * @param correlationVector
+     *            the CV.
+     * @return the handle of the vector.
+     */
+    public long add(CorrelationVector correlationVector) {
+        return this.parse(correlationVector.getValue());
+    }
+
+    /**
+     * Increments the extension of the given vector by one.
+     *
+     * @param handle
+     *            the handle of the vector.
+     * @return the new extension, or -1 if the vector can not be incremented any
+     *         further.
+     */
+    public int increment(long handle) {
+        final ByteBuffer slab = this.slab(handle);
+        final int slot = slot(handle);
+        final int tag = generation(handle) << FLAGS_GENERATION_SHIFT;
+
+        final int maxExtension = slab.getInt(slot + MAX_EXTENSION_OFFSET);
+        for (;;) {
+            final int snapshot = OffHeapAtomics.getIntVolatile(slab, slot + EXTENSION_OFFSET);
+            // Checked on each attempt, as the vector may be removed concurrently.
+            final int flags = flags(slab, slot);
+            if ((flags & ~((1 << FLAGS_GENERATION_SHIFT) - 1)) != tag || (flags & IN_USE) == 0) {
+                throw new IllegalArgumentException("Correlation vector handle " + handle + " was removed");
+            }
+            if ((flags & IMMUTABLE) != 0 || snapshot == Integer.MAX_VALUE) {
+                return -1;
+            }
+            final int next = snapshot + 1;
+            if (next > maxExtension) {
+                terminate(slab, slot, handle);
+                return -1;
+            }
+            if (OffHeapAtomics.compareAndSetInt(slab, slot + EXTENSION_OFFSET, snapshot, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Increments the extension of the given vector by one and writes the new
+     * value to the given array as ASCII bytes, as
+     * {@link CorrelationVector#increment()} returns it.
+     *
+     * @param handle
+     *            the handle of the vector.
+     * @param target
+     *            the array to write to.
+     * @param offset
+     *            the index of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small.
+     */
+    public int incrementAndWriteTo(long handle, byte[] target, int offset) {
+        final int extension = this.increment(handle);
+        if (extension < 0) {
+            return this.writeTo(handle, target, offset);
+        }
+        return write(this.slab(handle), slot(handle), extension, false, target, offset);
+    }
+
+    /**
+     * Writes the value of the given vector to the given array as ASCII bytes.
+     *
+     * @param handle
+     *            the handle of the vector.
+     * @param target
+     *            the array to write to.
+     * @param offset
+     *            the index of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small.
+     */
+    public int writeTo(long handle, byte[] target, int offset) {
+        final ByteBuffer slab = this.slab(handle);
+        final int slot = slot(handle);
+        final int extension = OffHeapAtomics.getIntVolatile(slab, slot + EXTENSION_OFFSET);
+        return write(slab, slot, extension, (flags(slab, slot) & IMMUTABLE) != 0, target, offset);
+    }
+
+    /**
+     * Writes the value of the given vector to the given buffer as ASCII bytes,
+     * starting at its position, and advances its position.
+     *
+     * @param handle
+     *            the handle of the vector.
+     * @param target
+     *            the buffer to write to.
+     * @return the number of bytes written.
+     * @throws BufferOverflowException
+     *             if the buffer is too small.
+     */
+    public int writeTo(long handle, ByteBuffer target) {
+        final ByteBuffer slab = this.slab(handle);
+        final int slot = slot(handle);
+        final int extension = OffHeapAtomics.getIntVolatile(slab, slot + EXTENSION_OFFSET);
+        final boolean immutable = (flags(slab, slot) & IMMUTABLE) != 0;
+        final int baseLength = slab.get(slot + BASE_LENGTH_OFFSET) & 0xFF;
+        final int digits = CorrelationVector.intLength(extension);
+        final int length = baseLength + 1 + digits + (immutable ? 1 : 0);
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+
+        final int position = target.position();
+        for (int i = 0; i < baseLength; i++) {
+            target.put(position + i, slab.get(slot + BASE_OFFSET + i));
+        }
+        target.put(position + baseLength, (byte) CorrelationVector.CV_DELIMITER);
+        int value = extension;
+        for (int p = position + baseLength + digits; p > position + baseLength; p--) {
+            target.put(p, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        if (immutable) {
+            target.put(position + length - 1, (byte) CorrelationVector.CV_TERMINATOR);
+        }
+        target.position(position + length);
+        return length;
+    }
+
+    /**
+     * Gets the current extension of the given vector.
+     *
+     * @param handle
+     *            the handle of the vector.
+     * @return the last element of the CV.
+     */
+    public int getExtension(long handle) {
+        return OffHeapAtomics.getIntVolatile(this.slab(handle), slot(handle) + EXTENSION_OFFSET);
+    }
+
+    /**
+     * Creates a copy of the given vector on the heap, bound to the factory of
+     * this table.
+     *
+     * @param handle
+     *            the handle of the vector.
+     * @return a CV with the current value of the vector.
+     */
+    public CorrelationVector get(long handle) {
+        final ByteBuffer slab = this.slab(handle);
+        final int slot = slot(handle);
+        final int extension = OffHeapAtomics.getIntVolatile(slab, slot + EXTENSION_OFFSET);
+        final int flags = flags(slab, slot);
+        final int baseLength = slab.get(slot + BASE_LENGTH_OFFSET) & 0xFF;
+        final char[] base = new char[baseLength];
+        for (int i = 0; i < baseLength; i++) {
+            base[i] = (char) slab.get(slot + BASE_OFFSET + i);
+        }
+        return new CorrelationVector(this.factory, new String(base), extension,
+                (flags & V2) != 0 ? CorrelationVectorVersion.V2 : CorrelationVectorVersion.V1,
+                (flags & IMMUTABLE) != 0);
+    }
+
+    /**
+     * Removes the given vector. Its handle is no longer valid and its slot is
+     * reused by the vectors added later.
+     *
+     * @param handle
+     *            the handle of the vector.
+     */
+    public synchronized void remove(long handle) {
+        final ByteBuffer slab = this.slab(handle);
+        final int slot = slot(handle);
+        OffHeapAtomics.setIntVolatile(slab, slot + FLAGS_OFFSET, 0);
+        OffHeapAtomics.setIntVolatile(slab, slot + GENERATION_OFFSET, generation(handle) + 1);
+        slab.putInt(slot + NEXT_FREE_OFFSET, this.freeHead);
+        this.freeHead = (int) handle;
+        this.size--;
+    }
+
+    /**
+     * Gets the number of vectors of the table.
+     *
+     * @return the number of vectors.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the maximum number of vectors of the table.
+     *
+     * @return the capacity of the table.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Stores the value of the given vector in a free slot.
+     *
+     * @param source
+     *            the vector to store.
+     * @return the handle of the stored vector.
+     */
+    private long add(MutableCorrelationVector source) {
+        if (source.baseLength() > MAX_BASE_LENGTH) {
+            // Only vectors that are not valid can have such a base.
+            source.reset(CorrelationVectorVersion.V1);
+        } else if (!isAscii(source.baseChars(), source.baseLength())) {
+            // The slot holds one byte per character of the base.
+            source.reset(source.getVersion());
+        }
+
+        final int index = this.allocate();
+        final ByteBuffer slab = this.slabs.get(index >>> SLAB_SHIFT);
+        final int slot = (index & (SLAB_SLOTS - 1)) * SLOT_SIZE;
+        final int generation = slab.getInt(slot + GENERATION_OFFSET);
+        final char[] base = source.baseChars();
+        final int baseLength = source.baseLength();
+
+        for (int i = 0; i < baseLength; i++) {
+            slab.put(slot + BASE_OFFSET + i, (byte) base[i]);
+        }
+        slab.put(slot + BASE_LENGTH_OFFSET, (byte) baseLength);
+        slab.putInt(slot + MAX_EXTENSION_OFFSET, CorrelationVector.maxExtension(baseLength, source.getVersion()));
+        OffHeapAtomics.setIntVolatile(slab, slot + EXTENSION_OFFSET, source.getExtension());
+        OffHeapAtomics.setIntVolatile(slab, slot + FLAGS_OFFSET,
+                generation << FLAGS_GENERATION_SHIFT | IN_USE | (source.isImmutable() ? IMMUTABLE : 0)
+                        | (source.getVersion() == CorrelationVectorVersion.V2 ? V2 : 0));
+
+        return ((long) generation << 32) | index;
+    }
+
+    private synchronized int allocate() {
+        final int index;
+        if (this.freeHead >= 0) {
+            index = this.freeHead;
+            final int slot = (index & (SLAB_SLOTS - 1)) * SLOT_SIZE;
+            this.freeHead = this.slabs.get(index >>> SLAB_SHIFT).getInt(slot + NEXT_FREE_OFFSET);
+        } else if (this.allocated < this.capacity) {
+            index = this.allocated++;
+            if (this.slabs.get(index >>> SLAB_SHIFT) == null) {
+                final int slots = Math.min(SLAB_SLOTS, this.capacity - index);
+                this.slabs.set(index >>> SLAB_SHIFT,
+                        ByteBuffer.allocateDirect(slots * SLOT_SIZE).order(ByteOrder.nativeOrder()));
+            }
+        } else {
+            throw new IllegalStateException("The correlation vector table is full: " + this.capacity);
+        }
+        this.size++;
+        return index;
+    }
+
+    /**
+     * Gets the slab of the given vector, checking that the handle is valid.
+     */
+    private ByteBuffer slab(long handle) {
+        final int index = (int) handle;
+        final ByteBuffer slab = index < 0 || index >= this.capacity ? null : this.slabs.get(index >>> SLAB_SHIFT);
+        if (slab == null) {
+            throw new IllegalArgumentException("Invalid correlation vector handle " + handle);
+        }
+        final int slot = slot(handle);
+        if (OffHeapAtomics.getIntVolatile(slab, slot + GENERATION_OFFSET) != generation(handle)
+                || (flags(slab, slot) & IN_USE) == 0) {
+            throw new IllegalArgumentException("Correlation vector handle " + handle + " was removed");
+        }
+        return slab;
+    }
+
+    /**
+     * Sets the immutable flag of the given vector, checking that it was not
+     * removed concurrently.
+     */
+    private static void terminate(ByteBuffer slab, int slot, long handle) {
+        final int tag = generation(handle) << FLAGS_GENERATION_SHIFT;
+        for (;;) {
+            final int flags = flags(slab, slot);
+            if ((flags & ~((1 << FLAGS_GENERATION_SHIFT) - 1)) != tag || (flags & IN_USE) == 0) {
+                break;
+            }
+            if ((flags & IMMUTABLE) != 0
+                    || OffHeapAtomics.compareAndSetInt(slab, slot + FLAGS_OFFSET, flags, flags | IMMUTABLE)) {
+                break;
+            }
+        }
+        if (OffHeapAtomics.getIntVolatile(slab, slot + GENERATION_OFFSET) != generation(handle)) {
+            throw new IllegalArgumentException("Correlation vector handle " + handle + " was removed");
+        }
+    }
+
+    private static int flags(ByteBuffer slab, int slot) {
+        return OffHeapAtomics.getIntVolatile(slab, slot + FLAGS_OFFSET);
+    }
+
+    private static boolean isAscii(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars[i] > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slot(long handle) {
+        return ((int) handle & (SLAB_SLOTS - 1)) * SLOT_SIZE;
+    }
+
+    private static int generation(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int write(ByteBuffer slab, int slot, int extension, boolean immutable, byte[] target,
+            int offset) {
+        final int baseLength = slab.get(slot + BASE_LENGTH_OFFSET) & 0xFF;
+        final int end = offset + baseLength + 1 + CorrelationVector.intLength(extension);
+        final int length = end - offset + (immutable ? 1 : 0);
+        if (offset < 0 || offset > target.length - length) {
+            throw new IndexOutOfBoundsException("The correlation vector needs " + length + " bytes");
+        }
+
+        for (int i = 0; i < baseLength; i++) {
+            target[offset + i] = slab.get(slot + BASE_OFFSET + i);
+        }
+        target[offset + baseLength] = CorrelationVector.CV_DELIMITER;
+        CorrelationVector.writeDigits(extension, target, end);
+        if (immutable) {
+            target[end] = CorrelationVector.CV_TERMINATOR;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Validates batches of correlation vectors, e.g. in log ingestion, without
+ * splitting or parsing them.
+ * <p/>
+ * A valid vector is a base of the length of its version made of base64
+ * characters, followed by one or more extensions of 1 to 10 digits that fit
+ * an int, each preceded by the delimiter, and optionally by the terminator.
+ * Its length does not exceed the maximum length of its version. The
+ * validator is stricter than the validation of
+ * {@link CorrelationVectorFactory.Builder#validateDuringCreation(boolean)}:
+ * it checks the alphabet of the base and rejects signs and empty extensions,
+ * and it accepts terminated vectors.
+ * <p/>
+ * Vectors in ASCII bytes, such as a column of vectors in a buffer, are checked
+ * 8 bytes at a time with SIMD-within-a-register arithmetic on longs.
+ */
+public final class CorrelationVectorValidator {
+
+    private static final int CV_BASE_LENGTH_V1 = 16;
+    private static final int CV_BASE_LENGTH_V2 = 22;
+    private static final int MAX_LENGTH_V1 = 63;
+    private static final int MAX_LENGTH_V2 = 127;
+    private static final int MAX_EXTENSION_DIGITS = 10;
+    private static final String MAX_EXTENSION = String.valueOf(Integer.MAX_VALUE);
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    /**
+     * Characters of the base64 alphabet.
+     */
+    private static final boolean[] BASE64 = new boolean[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            BASE64[c] = true;
+            BASE64[c + 'a' - 'A'] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            BASE64[c] = true;
+        }
+        BASE64['+'] = true;
+        BASE64['/'] = true;
+    }
+
+    private static final CorrelationVectorValidator ANY_VERSION = new CorrelationVectorValidator(null);
+    private static final CorrelationVectorValidator V1 = new CorrelationVectorValidator(CorrelationVectorVersion.V1);
+    private static final CorrelationVectorValidator V2 = new CorrelationVectorValidator(CorrelationVectorVersion.V2);
+
+    private final CorrelationVectorVersion version;
+
+    private CorrelationVectorValidator(CorrelationVectorVersion version) {
+        this.version = version;
+    }
+
+    /**
+     * Gets a validator of the vectors of the given version.
+     *
+     * @param version
+     *            the CV version.
+     * @return the validator.
+     */
+    public static CorrelationVectorValidator of(CorrelationVectorVersion version) {
+        if (version == CorrelationVectorVersion.V1) {
+            return V1;
+        } else if (version == CorrelationVectorVersion.V2) {
+            return V2;
+        }
+        throw new IllegalArgumentException("Unsupported correlation vector version: " + version);
+    }
+
+    /**
+     * Gets a validator of the vectors of any version, inferred from the length
+     * of their base.
+     *
+     * @return the validator.
+     */
+    public static CorrelationVectorValidator anyVersion() {
+        return ANY_VERSION;
+    }
+
+    /**
+     * Gets a value indicating whether the given vector is valid.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return true if the CV is valid.
+     */
+    public boolean isValid(CharSequence correlationVector) {
+        if (correlationVector == null) {
+            return false;
+        }
+        final int length = correlationVector.length();
+        final int end = length > 0 && correlationVector.charAt(length - 1) == CorrelationVector.CV_TERMINATOR
+                ? length - 1
+                : length;
+        final int baseLength = this.baseLength(end, end > CV_BASE_LENGTH_V1
+                && correlationVector.charAt(CV_BASE_LENGTH_V1) == CorrelationVector.CV_DELIMITER);
+        if (baseLength < 0 || end < baseLength + 2
+                || correlationVector.charAt(baseLength) != CorrelationVector.CV_DELIMITER) {
+            return false;
+        }
+
+        for (int i = 0; i < baseLength; i++) {
+            final char c = correlationVector.charAt(i);
+            if (c >= BASE64.length || !BASE64[c]) {
+                return false;
+            }
+        }
+
+        int start = baseLength + 1;
+        for (int i = start; i <= end; i++) {
+            final char c = i < end ? correlationVector.charAt(i) : CorrelationVector.CV_DELIMITER;
+            if (c == CorrelationVector.CV_DELIMITER) {
+                if (!isValidExtension(correlationVector, start, i)) {
+                    return false;
+                }
+                start = i + 1;
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets a value indicating whether the given vector is valid.
+     *
+     * @param data
+     *            the array holding the ASCII bytes of the CV.
+     * @param offset
+     *            the index of the first byte of the CV.
+     * @param length
+     *            the number of bytes of the CV.
+     * @return true if the CV is valid.
+     */
+    public boolean isValid(byte[] data, int offset, int length) {
+        final int end = length > 0 && data[offset + length - 1] == CorrelationVector.CV_TERMINATOR ? length - 1
+                : length;
+        final int baseLength = this.baseLength(end,
+                end > CV_BASE_LENGTH_V1 && data[offset + CV_BASE_LENGTH_V1] == CorrelationVector.CV_DELIMITER);
+        if (baseLength < 0 || end < baseLength + 2 || data[offset + baseLength] != CorrelationVector.CV_DELIMITER) {
+            return false;
+        }
+
+        for (int i = 0; i < baseLength; i += 8) {
+            final int lanes = Math.min(8, baseLength - i);
+            final long word = word(data, offset + i, lanes);
+            final long mask = HIGHS >>> ((8 - lanes) * 8);
+            if ((word & mask) != 0 || (base64(word) & mask) != mask) {
+                return false;
+            }
+        }
+
+        int start = baseLength + 1;
+        for (int i = start; i < end; i += 8) {
+            final int lanes = Math.min(8, end - i);
+            final long word = word(data, offset + i, lanes);
+            final long mask = HIGHS >>> ((8 - lanes) * 8);
+            long delimiters = equal(word, CorrelationVector.CV_DELIMITER) & mask;
+            if ((word & mask) != 0 || ((inRange(word, '0', '9') | delimiters) & mask) != mask) {
+                return false;
+            }
+            while (delimiters != 0) {
+                final int delimiter = i + (Long.numberOfTrailingZeros(delimiters) >>> 3);
+                if (!isValidExtension(data, offset, start, delimiter)) {
+                    return false;
+                }
+                start = delimiter + 1;
+                delimiters &= delimiters - 1;
+            }
+        }
+        return isValidExtension(data, offset, start, end);
+    }
+
+    /**
+     * Validates the given vectors.
+     *
+     * @param vectors
+     *            the CVs in string.
+     * @param results
+     *            receives at index i whether the CV at index i is valid.
+     * @return the number of valid CVs.
+     */
+    public int validate(CharSequence[] vectors, boolean[] results) {
+        return this.validate(vectors, 0, vectors.length, results);
+    }
+
+    /**
+     * Validates the given column of vectors: the ASCII bytes of vector i are the
+     * bytes of data from offsets[i] to offsets[i + 1] exclusive.
+     *
+     * @param data
+     *            the bytes of the CVs.
+     * @param offsets
+     *            the offsets of the CVs in data, one more than the number of CVs.
+     * @param results
+     *            receives at index i whether CV i is valid.
+     * @return the number of valid CVs.
+     */
+    public int validate(byte[] data, int[] offsets, boolean[] results) {
+        return this.validate(data, offsets, 0, offsets.length - 1, results);
+    }
+
+    /**
+     * Validates the given column of vectors: the ASCII bytes of vector i are the
+     * bytes of data from offsets[i] to offsets[i + 1] exclusive.
+     *
+     * @param data
+     *            the bytes of the CVs.
+     * @param offsets
+     *            the offsets of the CVs in data, one more than the number of CVs.
+     * @param results
+     *            receives bit i set if CV i is valid and cleared otherwise.
+     * @return the number of valid CVs.
+     */
+    public int validate(byte[] data, int[] offsets, BitSet results) {
+        int valid = 0;
+        for (int i = 0; i < offsets.length - 1; i++) {
+            final boolean result = this.isValid(data, offsets[i], offsets[i + 1] - offsets[i]);
+            results.set(i, result);
+            if (result) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Validates the given vectors with the threads of the given pool, in chunks
+     * of a few thousand vectors.
+     *
+     * @param vectors
+     *            the CVs in string.
+     * @param results
+     *            receives at index i whether the CV at index i is valid.
+     * @param pool
+     *            the pool running the validation.
+     * @return the number of valid CVs.
+     */
+    public int validateParallel(final CharSequence[] vectors, final boolean[] results, ForkJoinPool pool) {
+        final Chunk chunk = new Chunk(0, vectors.length) {
+            @Override
+            int validate(int from, int to) {
+                return CorrelationVectorValidator.this.validate(vectors, from, to, results);
+            }
+        };
+        pool.invoke(chunk);
+        return chunk.valid;
+    }
+
+    /**
+     * Validates the given column of vectors with the threads of the given pool,
+     * in chunks of a few thousand vectors.
+     *
+     * @param data
+     *            the bytes of the CVs.
+     * @param offsets
+     *            the offsets of the CVs in data, one more than the number of CVs.
+     * @param results
+     *            receives at index i whether CV i is valid.
+     * @param pool
+     *            the pool running the validation.
+     * @return the number of valid CVs.
+     */
+    public int validateParallel(final byte[] data, final int[] offsets, final boolean[] results, ForkJoinPool pool) {
+        final Chunk chunk = new Chunk(0, offsets.length - 1) {
+            @Override
+            int validate(int from, int to) {
+                return CorrelationVectorValidator.this.validate(data, offsets, from, to, results);
+            }
+        };
+        pool.invoke(chunk);
+        return chunk.valid;
+    }
+
+    private int validate(CharSequence[] vectors, int from, int to, boolean[] results) {
+        int valid = 0;
+        for (int i = from; i < to; i++) {
+            if (results[i] = this.isValid(vectors[i])) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    private int validate(byte[] data, int[] offsets, int from, int to, boolean[] results) {
+        int valid = 0;
+        for (int i = from; i < to; i++) {
+            if (results[i] = this.isValid(data, offsets[i], offsets[i + 1] - offsets[i])) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Gets the length of the base of a vector of the given length, or -1 if the
+     * vector is too long for its version. The length excludes the terminator,
+     * which a vector of the maximum length gets when it can not be incremented.
+     *
+     * @param delimiterAfterV1Base
+     *            whether the character following a V1 base is the delimiter,
+     *            to infer the version.
+     */
+    private int baseLength(int length, boolean delimiterAfterV1Base) {
+        final CorrelationVectorVersion version = this.version != null ? this.version
+                : delimiterAfterV1Base ? CorrelationVectorVersion.V1 : CorrelationVectorVersion.V2;
+        if (version == CorrelationVectorVersion.V1) {
+            return length <= MAX_LENGTH_V1 ? CV_BASE_LENGTH_V1 : -1;
+        }
+        return length <= MAX_LENGTH_V2 ? CV_BASE_LENGTH_V2 : -1;
+    }
+
+    /**
+     * Checks the length and value of the extension of digits from start to end
+     * exclusive.
+     */
+    private static boolean isValidExtension(CharSequence value, int start, int end) {
+        final int digits = end - start;
+        if (digits == 0 || digits > MAX_EXTENSION_DIGITS) {
+            return false;
+        }
+        if (digits == MAX_EXTENSION_DIGITS) {
+            for (int i = 0; i < digits; i++) {
+                final int difference = value.charAt(start + i) - MAX_EXTENSION.charAt(i);
+                if (difference != 0) {
+                    return difference < 0;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidExtension(byte[] data, int offset, int start, int end) {
+        final int digits = end - start;
+        if (digits == 0 || digits > MAX_EXTENSION_DIGITS) {
+            return false;
+        }
+        if (digits == MAX_EXTENSION_DIGITS) {
+            for (int i = 0; i < digits; i++) {
+                final int difference = data[offset + start + i] - MAX_EXTENSION.charAt(i);
+                if (difference != 0) {
+                    return difference < 0;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the given number of bytes, at most 8, into the low lanes of a word.
+     * A full word is read when the array allows it, and the caller ignores the
+     * lanes past the vector.
+     */
+    private static long word(byte[] data, int index, int lanes) {
+        if (index + 8 <= data.length) {
+            return ByteArrays.getLongLittleEndian(data, index);
+        }
+        long word = 0;
+        for (int i = lanes - 1; i >= 0; i--) {
+            word = (word << 8) | (data[index + i] & 0xFF);
+        }
+        return word;
+    }
+
+    /**
+     * Sets the high bit of the lanes of base64 characters. The lanes must be
+     * ASCII.
+     */
+    private static long base64(long word) {
+        return inRange(word, 'A', 'Z') | inRange(word, 'a', 'z') | inRange(word, '/', '9') | equal(word, '+');
+    }
+
+    /**
+     * Sets the high bit of the ASCII lanes from low to high inclusive: adding
+     * 0x80 - low to a lane below 0x80 sets its high bit if it is at least low,
+     * and adding 0x7F - high if it is above high, without carrying into the
+     * next lane.
+     */
+    private static long inRange(long word, int low, int high) {
+        return (word + ONES * (0x80 - low)) & ~(word + ONES * (0x7F - high)) & HIGHS;
+    }
+
+    private static long equal(long word, int value) {
+        return inRange(word, value, value);
+    }
+
+    /**
+     * Validates a range of vectors, splitting it in halves while it is larger
+     * than the threshold.
+     */
+    private abstract static class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        int valid;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract int validate(int from, int to);
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PARALLEL_THRESHOLD) {
+                this.valid = this.validate(this.from, this.to);
+                return;
+            }
+            final int middle = (this.from + this.to) >>> 1;
+            final Chunk outer = this;
+            final Chunk left = new Chunk(this.from, middle) {
+                @Override
+                int validate(int from, int to) {
+                    return outer.validate(from, to);
+                }
+            };
+            final Chunk right = new Chunk(middle, this.to) {
+                @Override
+                int validate(int from, int to) {
+                    return outer.validate(from, to);
+                }
+            };
+            invokeAll(left, right);
+            this.valid = left.valid + right.valid;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Source of the random bytes used by CV's Spin operation.
+ */
+public interface EntropySource {
+
+    /**
+     * Fills the given array with random bytes.
+     *
+     * @param bytes
+     *            the array to fill.
+     */
+    void nextBytes(byte[] bytes);
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base generator for short-lived processes, where the first
+ * {@link UUID#randomUUID()} call, which seeds a {@link SecureRandom}, dominates
+ * the time to create the first vector.
+ * <p/>
+ * Bases are drawn from a SplitMix64 sequence seeded, on the first call, from
+ * the clocks, the identity hash of a new object and the thread id, which is
+ * cheap and never blocks. A background thread then obtains a seed from
+ * {@link SecureRandom} and mixes it into the sequence. Nothing is seeded before
+ * the first call, so a generator created while building an ahead-of-time
+ * compiled image does not carry its seed into the image.
+ * <p/>
+ * Until the reseed completes, the bases only depend on that first seed, which
+ * has little entropy: processes started from the same image at the same time,
+ * e.g. replicas of a container, can get the same seed and generate the same
+ * bases. {@link #withoutReseed()} keeps that risk for the lifetime of the
+ * generator and is meant for benchmarks and tests.
+ * <p/>
+ * The bases are not cryptographically random: use the default generator when
+ * bases must not be predictable.
+ */
+public final class FastStartBaseVectorGenerator implements BaseVectorGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final boolean reseedFromSecureRandom;
+    private final AtomicLong state = new AtomicLong();
+    private volatile boolean seeded;
+
+    /**
+     * Creates a generator that mixes a {@link SecureRandom} seed into its
+     * sequence once one is available.
+     */
+    public FastStartBaseVectorGenerator() {
+        this(true);
+    }
+
+    private FastStartBaseVectorGenerator(boolean reseedFromSecureRandom) {
+        this.reseedFromSecureRandom = reseedFromSecureRandom;
+    }
+
+    /**
+     * Creates a generator that never mixes a {@link SecureRandom} seed into its
+     * sequence and starts no thread. Its bases only depend on the time, an
+     * identity hash and the thread id of the first call, so different processes
+     * can generate the same bases.
+     *
+     * @return a new generator.
+     */
+    public static FastStartBaseVectorGenerator withoutReseed() {
+        return new FastStartBaseVectorGenerator(false);
+    }
+
+    @Override
+    public String generateBase(CorrelationVectorVersion version) {
+        if (!this.seeded) {
+            this.seed();
+        }
+
+        final long high = mix64(this.state.addAndGet(GOLDEN_GAMMA));
+        final long low = mix64(this.state.addAndGet(GOLDEN_GAMMA));
+
+        if (CorrelationVectorVersion.V1 == version) {
+            final byte[] bytes = new byte[16];
+            CorrelationVector.putLong(bytes, 0, high);
+            CorrelationVector.putLong(bytes, 8, low);
+            return Base64Encoder.toBase64String(bytes, 12);
+        } else if (CorrelationVectorVersion.V2 == version) {
+            return CorrelationVector.getBaseFromGuid(new UUID(high, low));
+        } else {
+            throw new IllegalArgumentException("Unsupported correlation vector version:" + version);
+        }
+    }
+
+    private synchronized void seed() {
+        if (this.seeded) {
+            return;
+        }
+
+        long seed = System.currentTimeMillis();
+        seed = mix64(seed ^ System.nanoTime());
+        seed = mix64(seed ^ System.identityHashCode(new Object()));
+        seed = mix64(seed ^ Thread.currentThread().getId());
+        this.state.set(seed);
+        this.seeded = true;
+
+        if (this.reseedFromSecureRandom) {
+            final Thread reseeder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final long secureSeed = new SecureRandom().nextLong();
+                    long current;
+                    do {
+                        current = state.get();
+                    } while (!state.compareAndSet(current, current ^ secureSeed));
+                }
+            }, "cv-base-reseeder");
+            reseeder.setDaemon(true);
+            reseeder.start();
+        }
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Hooks emitting JDK Flight Recorder events for correlation vector operations.
+ * Flight Recorder is not available before Java 11, so this version does
+ * nothing; the Java 11 version of this class emits the events.
+ * <p/>
+ * A begin method returns the pending event, or null when the event is
+ * disabled, and the matching end method commits it.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    static Object beginExtend() {
+        return null;
+    }
+
+    static void endExtend(Object event, CorrelationVector correlationVector) {
+    }
+
+    static Object beginSpin() {
+        return null;
+    }
+
+    static void endSpin(Object event, CorrelationVector correlationVector) {
+    }
+
+    static Object beginBaseGeneration() {
+        return null;
+    }
+
+    static void endBaseGeneration(Object event, CorrelationVectorVersion version) {
+    }
+
+    static void terminate(CorrelationVector correlationVector) {
+    }
+}
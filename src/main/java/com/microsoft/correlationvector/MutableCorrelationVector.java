@@ -0,0 +1,489 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * A correlation vector that can be reset and reused, for request loops that
+ * parse or extend a header, increment it a few times and discard it.
+ * <p/>
+ * The base is kept in a buffer owned by the instance, so resetting, extending,
+ * incrementing and writing the value do not allocate once the buffer is large
+ * enough, except to generate a new base or to validate a value when the factory
+ * validates on creation. An instance is not thread-safe: keep one per thread,
+ * e.g. one per event loop, and convert it with {@link #toCorrelationVector()}
+ * when the vector has to outlive the current request.
+ * <p/>
+ * The operations apply the same rules as the {@link CorrelationVectorFactory}
+ * they are bound to, including the Reset operator, but are not reported to its
+ * metrics.
+ */
+public final class MutableCorrelationVector {
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private final CorrelationVectorFactory factory;
+
+    private char[] base = new char[INITIAL_CAPACITY];
+    private int baseLength;
+    private int extension;
+    private CorrelationVectorVersion version;
+    private boolean isImmutable;
+    // The largest extension of the current base, computed when it changes.
+    private int maxExtension;
+
+    /**
+     * Initializes a new vector bound to the default factory.
+     */
+    public MutableCorrelationVector() {
+        this(CorrelationVectorFactory.getDefault());
+    }
+
+    /**
+     * Initializes a new vector bound to the given factory.
+     *
+     * @param factory
+     *            the factory whose configuration is applied.
+     */
+    public MutableCorrelationVector(CorrelationVectorFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory can not be null");
+        }
+        this.factory = factory;
+        this.reset();
+    }
+
+    /**
+     * Resets this vector to a new vector of the version of the factory. This
+     * should only be done when no correlation vector was found in the message
+     * header.
+     *
+     * @return this vector.
+     */
+    public MutableCorrelationVector reset() {
+        return this.reset(this.factory.getVersion());
+    }
+
+    /**
+     * Resets this vector to a new vector of the given version.
+     *
+     * @param version
+     *            The correlation vector implementation version.
+     * @return this vector.
+     */
+    public MutableCorrelationVector reset(CorrelationVectorVersion version) {
+        final String generated = this.factory.generateBase(version);
+        this.setBase(generated, generated.length());
+        this.extension = 0;
+        this.version = version;
+        this.isImmutable = false;
+        this.maxExtension = CorrelationVector.maxExtension(this.baseLength, version);
+        return this;
+    }
+
+    /**
+     * Resets this vector to the given value, as
+     * {@link CorrelationVectorFactory#parse(String)} does. A new V1 vector is
+     * created when the value is not a valid correlation vector.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return this vector.
+     */
+    public MutableCorrelationVector reset(CharSequence correlationVector) {
+        if (!this.tryParse(correlationVector, false)) {
+            this.reset(CorrelationVectorVersion.V1);
+        }
+        return this;
+    }
+
+    /**
+     * Resets this vector to the given value if it is a valid correlation vector,
+     * and leaves it unchanged otherwise.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return true if the value was parsed.
+     */
+    public boolean tryReset(CharSequence correlationVector) {
+        return this.tryParse(correlationVector, false);
+    }
+
+    /**
+     * Resets this vector to the extension of the given value, as
+     * {@link CorrelationVectorFactory#extend(String)} does. This should be done at
+     * the entry point of an operation, taken from the message header indicated
+     * by the CV header name. A new vector is created when the value is null or
+     * empty.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @return this vector.
+     */
+    public MutableCorrelationVector extend(CharSequence correlationVector) {
+
+        if (correlationVector == null || correlationVector.length() == 0) {
+            return this.reset();
+        }
+
+        if (endsWithTerminator(correlationVector)) {
+            return this.reset(correlationVector);
+        }
+
+        final CorrelationVectorVersion inferred = CorrelationVector.inferVersion(correlationVector,
+                this.factory.isValidateDuringCreation());
+
+        if (this.factory.isValidateDuringCreation()) {
+            CorrelationVector.validate(correlationVector.toString(), inferred);
+        }
+
+        final int length = correlationVector.length();
+        if (CorrelationVector.isOversized(length, 0, inferred)) {
+            if (!this.resetBase(correlationVector.toString(), inferred) && !this.tryParse(correlationVector, true)) {
+                this.reset(CorrelationVectorVersion.V1);
+            }
+            return this;
+        }
+
+        this.setBase(correlationVector, length);
+        this.extension = 0;
+        this.version = inferred;
+        this.isImmutable = false;
+        this.maxExtension = CorrelationVector.maxExtension(length, inferred);
+        return this;
+    }
+
+    /**
+     * Extends the current value of this vector in place, as if it was passed to
+     * {@link #extend(CharSequence)}. This is the vector of an operation started by
+     * the operation of this vector.
+     *
+     * @return this vector.
+     */
+    public MutableCorrelationVector extend() {
+
+        if (this.isImmutable) {
+            return this;
+        }
+
+        final int length = this.baseLength + 1 + CorrelationVector.intLength(this.extension);
+        if (CorrelationVector.isOversized(length, 0, this.version)) {
+            final String value = this.appendTo(new StringBuilder(length)).toString();
+            if (!this.resetBase(value, this.version)) {
+                this.isImmutable = true;
+            }
+            return this;
+        }
+
+        this.ensureCapacity(length);
+        this.base[this.baseLength] = CorrelationVector.CV_DELIMITER;
+        CorrelationVector.writeDigits(this.extension, this.base, length);
+        this.baseLength = length;
+        this.extension = 0;
+        this.maxExtension = CorrelationVector.maxExtension(length, this.version);
+        return this;
+    }
+
+    /**
+     * Increments the current extension by one. Do this before writing the value
+     * to an outbound message header.
+     *
+     * @return true if the extension was incremented, false if the vector can not
+     *         be incremented any further.
+     */
+    public boolean increment() {
+
+        if (this.isImmutable || this.extension == Integer.MAX_VALUE) {
+            return false;
+        }
+
+        final int next = this.extension + 1;
+        if (next > this.maxExtension) {
+            if (!this.resetBase(new String(this.base, 0, this.baseLength), this.version)) {
+                this.isImmutable = true;
+                return false;
+            }
+            this.extension = 1;
+            return true;
+        }
+
+        this.extension = next;
+        return true;
+    }
+
+    /**
+     * Gets the current extension.
+     *
+     * @return the last element of the CV.
+     */
+    public int getExtension() {
+        return this.extension;
+    }
+
+    /**
+     * Gets the version of the correlation vector implementation.
+     *
+     * @return version of the CV.
+     */
+    public CorrelationVectorVersion getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets a value indicating whether the vector is terminated and can no longer
+     * be incremented or extended.
+     *
+     * @return true if the CV is immutable.
+     */
+    public boolean isImmutable() {
+        return this.isImmutable;
+    }
+
+    /**
+     * Gets the buffer holding the base of this vector. Only the first
+     * {@link #baseLength()} characters belong to the base.
+     *
+     * @return the base buffer.
+     */
+    char[] baseChars() {
+        return this.base;
+    }
+
+    /**
+     * Gets the length of the base of this vector.
+     *
+     * @return the number of characters of the base.
+     */
+    int baseLength() {
+        return this.baseLength;
+    }
+
+    /**
+     * Gets the length of the value of the correlation vector.
+     *
+     * @return the number of characters of the CV.
+     */
+    public int length() {
+        return this.baseLength + 1 + CorrelationVector.intLength(this.extension) + (this.isImmutable ? 1 : 0);
+    }
+
+    /**
+     * Writes the value of the correlation vector to the given array.
+     *
+     * @param target
+     *            the array to write to.
+     * @param offset
+     *            the index of the first character to write.
+     * @return the number of characters written.
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small.
+     */
+    public int writeTo(char[] target, int offset) {
+        final int length = this.length();
+        if (offset < 0 || offset > target.length - length) {
+            throw new IndexOutOfBoundsException("The correlation vector needs " + length + " characters");
+        }
+
+        System.arraycopy(this.base, 0, target, offset, this.baseLength);
+        target[offset + this.baseLength] = CorrelationVector.CV_DELIMITER;
+        if (this.isImmutable) {
+            CorrelationVector.writeDigits(this.extension, target, offset + length - 1);
+            target[offset + length - 1] = CorrelationVector.CV_TERMINATOR;
+        } else {
+            CorrelationVector.writeDigits(this.extension, target, offset + length);
+        }
+        return length;
+    }
+
+    /**
+     * Writes the value of the correlation vector to the given array as ASCII
+     * bytes.
+     *
+     * @param target
+     *            the array to write to.
+     * @param offset
+     *            the index of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small.
+     */
+    public int writeTo(byte[] target, int offset) {
+        final int length = this.length();
+        if (offset < 0 || offset > target.length - length) {
+            throw new IndexOutOfBoundsException("The correlation vector needs " + length + " bytes");
+        }
+
+        for (int i = 0; i < this.baseLength; i++) {
+            target[offset + i] = (byte) this.base[i];
+        }
+        target[offset + this.baseLength] = CorrelationVector.CV_DELIMITER;
+
+        CorrelationVector.writeDigits(this.extension, target, offset + length - (this.isImmutable ? 1 : 0));
+        if (this.isImmutable) {
+            target[offset + length - 1] = CorrelationVector.CV_TERMINATOR;
+        }
+        return length;
+    }
+
+    /**
+     * Appends the value of the correlation vector to the given builder.
+     *
+     * @param target
+     *            the builder to append to.
+     * @return the builder.
+     */
+    public StringBuilder appendTo(StringBuilder target) {
+        target.append(this.base, 0, this.baseLength).append(CorrelationVector.CV_DELIMITER).append(this.extension);
+        if (this.isImmutable) {
+            target.append(CorrelationVector.CV_TERMINATOR);
+        }
+        return target;
+    }
+
+    /**
+     * Gets the value of the correlation vector as a string.
+     *
+     * @return CV in string.
+     */
+    public String getValue() {
+        return this.appendTo(new StringBuilder(this.length())).toString();
+    }
+
+    /**
+     * Creates an immutable snapshot of this vector, bound to the same factory.
+     *
+     * @return a CV with the current value of this vector.
+     */
+    public CorrelationVector toCorrelationVector() {
+        final String baseVector = new String(this.base, 0, this.baseLength);
+        return new CorrelationVector(this.factory,
+                this.factory.isInternBaseVectors() ? baseVector.intern() : baseVector, this.extension, this.version,
+                this.isImmutable);
+    }
+
+    /**
+     * Returns a string representation of the CV.
+     *
+     * @return CV in string.
+     */
+    @Override
+    public String toString() {
+        return this.getValue();
+    }
+
+    /**
+     * Parses the given value into this vector, leaving it unchanged if the value
+     * is not a valid correlation vector.
+     *
+     * @param correlationVector
+     *            CV in string.
+     * @param terminate
+     *            whether to parse the value as if it was followed by the CV
+     *            terminator.
+     * @return true if the value was parsed.
+     */
+    private boolean tryParse(CharSequence correlationVector, boolean terminate) {
+
+        if (correlationVector == null || isBlank(correlationVector)) {
+            return false;
+        }
+
+        final int length = correlationVector.length();
+        int p = length - 1;
+        while (p >= 0 && correlationVector.charAt(p) != CorrelationVector.CV_DELIMITER) {
+            p--;
+        }
+        if (p <= 0) {
+            return false;
+        }
+
+        final boolean immutable = terminate || endsWithTerminator(correlationVector);
+        final int end = (immutable && !terminate) ? length - 1 : length;
+        int start = p + 1;
+        if (start < end && correlationVector.charAt(start) == '+') {
+            start++;
+        }
+        if (start == end) {
+            return false;
+        }
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = correlationVector.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+
+        this.setBase(correlationVector, p);
+        this.extension = value;
+        this.version = CorrelationVector.inferVersion(correlationVector, false);
+        this.maxExtension = CorrelationVector.maxExtension(p, this.version);
+        // Oversized values are terminated, as the CorrelationVector constructor does.
+        this.isImmutable = immutable || value > this.maxExtension;
+        return true;
+    }
+
+    /**
+     * Replaces the base of this vector with the reset base of the given oversized
+     * base, if the factory resets vectors.
+     *
+     * @param oversizedBase
+     *            the base that would make the vector oversized.
+     * @param version
+     *            CV version.
+     * @return true if the vector was reset.
+     */
+    private boolean resetBase(String oversizedBase, CorrelationVectorVersion version) {
+        final String resetBase = this.factory.resetBase(oversizedBase, version);
+        if (resetBase == null) {
+            return false;
+        }
+
+        this.setBase(resetBase, resetBase.length());
+        this.extension = 0;
+        this.version = version;
+        this.isImmutable = false;
+        this.maxExtension = CorrelationVector.maxExtension(this.baseLength, version);
+        this.factory.onReset(oversizedBase, resetBase);
+        return true;
+    }
+
+    private void setBase(CharSequence value, int length) {
+        this.ensureCapacity(length);
+        if (value instanceof String) {
+            ((String) value).getChars(0, length, this.base, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                this.base[i] = value.charAt(i);
+            }
+        }
+        this.baseLength = length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > this.base.length) {
+            final char[] grown = new char[Math.max(length, this.base.length * 2)];
+            System.arraycopy(this.base, 0, grown, 0, this.baseLength);
+            this.base = grown;
+        }
+    }
+
+    private static boolean endsWithTerminator(CharSequence value) {
+        final int length = value.length();
+        return length > 0 && value.charAt(length - 1) == CorrelationVector.CV_TERMINATOR;
+    }
+
+    private static boolean isBlank(CharSequence value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
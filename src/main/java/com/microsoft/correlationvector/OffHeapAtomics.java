@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Atomic access to the ints of a buffer in native byte order. The ints must be
+ * aligned on four bytes. This version serializes the accesses with striped
+ * locks; the Java 9 version of this class uses a byte buffer view
+ * {@code VarHandle} and does not lock.
+ */
+final class OffHeapAtomics {
+
+    private static final int LOCK_COUNT = 64;
+
+    private static final Object[] LOCKS = new Object[LOCK_COUNT];
+
+    static {
+        for (int i = 0; i < LOCK_COUNT; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private OffHeapAtomics() {
+    }
+
+    /**
+     * Reads the int at the given index with volatile semantics.
+     *
+     * @param buffer
+     *            the buffer.
+     * @param index
+     *            the index of the int, in bytes.
+     * @return the int.
+     */
+    static int getIntVolatile(ByteBuffer buffer, int index) {
+        synchronized (lock(buffer, index)) {
+            return buffer.getInt(index);
+        }
+    }
+
+    /**
+     * Writes the int at the given index with volatile semantics.
+     *
+     * @param buffer
+     *            the buffer.
+     * @param index
+     *            the index of the int, in bytes.
+     * @param value
+     *            the int.
+     */
+    static void setIntVolatile(ByteBuffer buffer, int index, int value) {
+        synchronized (lock(buffer, index)) {
+            buffer.putInt(index, value);
+        }
+    }
+
+    /**
+     * Atomically sets the int at the given index to the given value if it holds
+     * the expected value.
+     *
+     * @param buffer
+     *            the buffer.
+     * @param index
+     *            the index of the int, in bytes.
+     * @param expect
+     *            the expected value.
+     * @param update
+     *            the new value.
+     * @return true if the int was updated.
+     */
+    static boolean compareAndSetInt(ByteBuffer buffer, int index, int expect, int update) {
+        synchronized (lock(buffer, index)) {
+            if (buffer.getInt(index) != expect) {
+                return false;
+            }
+            buffer.putInt(index, update);
+            return true;
+        }
+    }
+
+    private static Object lock(ByteBuffer buffer, int index) {
+        return LOCKS[(System.identityHashCode(buffer) ^ (index >>> 2)) & (LOCK_COUNT - 1)];
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Metrics sink that counts the operations of the factories using it and keeps
+ * histograms of the length and depth of the vectors they produce. Counters are
+ * striped, so recording from many threads does not contend; call
+ * {@link #snapshot()} to export the current values.
+ */
+public final class StripedCorrelationVectorMetrics implements CorrelationVectorMetrics {
+
+    /**
+     * Number of buckets of the length histogram. Longer vectors are counted in the
+     * last bucket.
+     */
+    public static final int LENGTH_BUCKETS = 129;
+    /**
+     * Number of buckets of the depth histogram. Deeper vectors are counted in the
+     * last bucket.
+     */
+    public static final int DEPTH_BUCKETS = 65;
+
+    private final StripedCounter baseGenerated = new StripedCounter();
+    private final StripedCounter parsed = new StripedCounter();
+    private final StripedCounter receivedTerminated = new StripedCounter();
+    private final StripedCounter parseFailures = new StripedCounter();
+    private final StripedCounter extended = new StripedCounter();
+    private final StripedCounter spun = new StripedCounter();
+    private final StripedCounter incremented = new StripedCounter();
+    private final StripedCounter terminated = new StripedCounter();
+
+    private final StripedHistogram lengths = new StripedHistogram(LENGTH_BUCKETS);
+    private final StripedHistogram depths = new StripedHistogram(DEPTH_BUCKETS);
+
+    @Override
+    public void onBaseGenerated(CorrelationVectorVersion version) {
+        this.baseGenerated.increment();
+    }
+
+    @Override
+    public void onParse(CorrelationVector correlationVector) {
+        this.parsed.increment();
+        if (correlationVector.isImmutable()) {
+            this.receivedTerminated.increment();
+        }
+        this.recordShape(correlationVector);
+    }
+
+    @Override
+    public void onParseFailure(String correlationVector) {
+        this.parseFailures.increment();
+    }
+
+    @Override
+    public void onExtend(CorrelationVector correlationVector) {
+        this.extended.increment();
+        this.recordShape(correlationVector);
+    }
+
+    @Override
+    public void onSpin(CorrelationVector correlationVector) {
+        this.spun.increment();
+        this.recordShape(correlationVector);
+    }
+
+    @Override
+    public void onIncrement(CorrelationVector correlationVector, String value) {
+        this.incremented.increment();
+    }
+
+    @Override
+    public void onTerminate(CorrelationVector correlationVector) {
+        this.terminated.increment();
+    }
+
+    /**
+     * Takes a snapshot of the current values. Operations recorded concurrently
+     * may be partially included.
+     *
+     * @return the snapshot.
+     */
+    public CorrelationVectorMetricsSnapshot snapshot() {
+        return new CorrelationVectorMetricsSnapshot(this.baseGenerated.sum(), this.parsed.sum(),
+                this.receivedTerminated.sum(), this.parseFailures.sum(), this.extended.sum(), this.spun.sum(),
+                this.incremented.sum(), this.terminated.sum(), this.lengths.snapshot(), this.depths.snapshot());
+    }
+
+    private void recordShape(CorrelationVector correlationVector) {
+        this.lengths.record(correlationVector.length());
+        this.depths.record(correlationVector.depth());
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads concurrent updates over cache-line padded cells, so
+ * threads updating it do not contend on a single value. The Java 9 version of
+ * this class is backed by LongAdder.
+ */
+final class StripedCounter {
+
+    /**
+     * Number of longs between two cells, so that each cell has a cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(Stripes.COUNT * PADDING);
+
+    /**
+     * Adds one to the counter.
+     */
+    void increment() {
+        this.cells.getAndIncrement(Stripes.current() * PADDING);
+    }
+
+    /**
+     * Adds the given value to the counter.
+     *
+     * @param value
+     *            the value to add.
+     */
+    void add(long value) {
+        this.cells.getAndAdd(Stripes.current() * PADDING, value);
+    }
+
+    /**
+     * Gets the sum of the counter. The sum is not an atomic snapshot when the
+     * counter is updated concurrently.
+     *
+     * @return the sum.
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < Stripes.COUNT; i++) {
+            sum += this.cells.get(i * PADDING);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of small non-negative integers with one bucket per value. Each
+ * stripe has its own row of buckets, so threads recording concurrently rarely
+ * contend.
+ */
+final class StripedHistogram {
+
+    private final int buckets;
+    private final AtomicLongArray counts;
+
+    /**
+     * Creates a histogram of the values from 0 to buckets - 1. Larger values are
+     * counted in the last bucket.
+     *
+     * @param buckets
+     *            number of buckets.
+     */
+    StripedHistogram(int buckets) {
+        this.buckets = buckets;
+        this.counts = new AtomicLongArray(Stripes.COUNT * buckets);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            the non-negative value.
+     */
+    void record(int value) {
+        final int bucket = value < this.buckets ? value : this.buckets - 1;
+        this.counts.getAndIncrement(Stripes.current() * this.buckets + bucket);
+    }
+
+    /**
+     * Gets the count of each bucket.
+     *
+     * @return the counts, indexed by value.
+     */
+    long[] snapshot() {
+        final long[] snapshot = new long[this.buckets];
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            final int row = stripe * this.buckets;
+            for (int i = 0; i < this.buckets; i++) {
+                snapshot[i] += this.counts.get(row + i);
+            }
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations in nanoseconds: each power of two is split
+ * into 8 linear buckets, so a duration is known within 12.5%. Durations of
+ * 2^40 nanoseconds, about 18 minutes, and more are counted in the last bucket.
+ * Like {@link StripedHistogram}, each stripe has its own row of buckets.
+ */
+final class StripedLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+
+    /**
+     * Number of buckets.
+     */
+    static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(Stripes.COUNT * BUCKETS);
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos
+     *            the duration in nanoseconds.
+     */
+    void record(long nanos) {
+        this.counts.getAndIncrement(Stripes.current() * BUCKETS + bucket(nanos));
+    }
+
+    /**
+     * Gets the count of each bucket.
+     *
+     * @return the counts, indexed by bucket.
+     */
+    long[] snapshot() {
+        final long[] snapshot = new long[BUCKETS];
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            final int row = stripe * BUCKETS;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] += this.counts.get(row + i);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the bucket of the given duration.
+     *
+     * @param nanos
+     *            the duration in nanoseconds.
+     * @return the index of the bucket.
+     */
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the smallest duration counted in the given bucket.
+     *
+     * @param bucket
+     *            the index of the bucket.
+     * @return the duration in nanoseconds.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (magnitude - SUB_BUCKET_BITS);
+    }
+}
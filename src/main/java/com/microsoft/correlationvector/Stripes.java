@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Maps threads to the stripes of striped counters and histograms.
+ */
+final class Stripes {
+
+    /**
+     * Number of stripes, the smallest power of two not below the number of
+     * processors, at most 64.
+     */
+    static final int COUNT = Math.min(64,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    private static final int MASK = COUNT - 1;
+
+    private Stripes() {
+    }
+
+    /**
+     * Gets the stripe of the current thread.
+     *
+     * @return the stripe index.
+     */
+    static int current() {
+        final long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & MASK;
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+/**
+ * Source of the clock ticks used by CV's Spin operation.
+ */
+public interface TickSource {
+
+    /**
+     * Gets the number of ticks since epoch time. A tick is 100 nanoseconds.
+     *
+     * @return number of ticks since epoch.
+     */
+    long getTicksSinceEpoch();
+}
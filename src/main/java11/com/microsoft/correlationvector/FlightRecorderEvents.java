@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Hooks emitting JDK Flight Recorder events for correlation vector operations.
+ * <p/>
+ * A begin method returns the pending event, or null when the event is
+ * disabled, and the matching end method commits it. Extend, spin and base
+ * generation events are only committed when they last longer than their
+ * threshold, 100 microseconds by default, which can be changed in the
+ * recording settings, e.g.
+ * {@code com.microsoft.correlationvector.Extend#threshold=0 ns}. Of the events
+ * passing the threshold, one in N is committed, where N is set by the
+ * {@value #SAMPLING_PROPERTY} system property and defaults to 1. Terminate
+ * events are rare and always committed.
+ * <p/>
+ * Until a recording has been started the hooks only check
+ * {@link FlightRecorder#isInitialized()}, so applications that do not use the
+ * Flight Recorder do not pay for loading it.
+ */
+final class FlightRecorderEvents {
+
+    static final String SAMPLING_PROPERTY = "com.microsoft.correlationvector.jfr.sampling";
+
+    private static final long SAMPLING = Math.max(1, Long.getLong(SAMPLING_PROPERTY, 1));
+    private static final AtomicLong SAMPLED = new AtomicLong();
+
+    private FlightRecorderEvents() {
+    }
+
+    static Object beginExtend() {
+        if (!FlightRecorder.isInitialized() || !Probes.EXTEND.isEnabled()) {
+            return null;
+        }
+        final ExtendEvent event = new ExtendEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endExtend(Object event, CorrelationVector correlationVector) {
+        if (event != null) {
+            commit((ExtendEvent) event, correlationVector, true);
+        }
+    }
+
+    static Object beginSpin() {
+        if (!FlightRecorder.isInitialized() || !Probes.SPIN.isEnabled()) {
+            return null;
+        }
+        final SpinEvent event = new SpinEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endSpin(Object event, CorrelationVector correlationVector) {
+        if (event != null) {
+            commit((SpinEvent) event, correlationVector, true);
+        }
+    }
+
+    static Object beginBaseGeneration() {
+        if (!FlightRecorder.isInitialized() || !Probes.BASE_GENERATION.isEnabled()) {
+            return null;
+        }
+        final BaseGenerationEvent event = new BaseGenerationEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endBaseGeneration(Object event, CorrelationVectorVersion version) {
+        if (event != null) {
+            final BaseGenerationEvent baseGeneration = (BaseGenerationEvent) event;
+            baseGeneration.end();
+            if (baseGeneration.shouldCommit() && sample()) {
+                baseGeneration.version = version.name();
+                baseGeneration.commit();
+            }
+        }
+    }
+
+    static void terminate(CorrelationVector correlationVector) {
+        if (FlightRecorder.isInitialized() && Probes.TERMINATE.isEnabled()) {
+            commit(new TerminateEvent(), correlationVector, false);
+        }
+    }
+
+    private static boolean sample() {
+        return SAMPLING == 1 || SAMPLED.incrementAndGet() % SAMPLING == 0;
+    }
+
+    private static void commit(VectorEvent event, CorrelationVector correlationVector, boolean sampled) {
+        event.end();
+        if (event.shouldCommit() && (!sampled || sample())) {
+            event.version = correlationVector.getVersion().name();
+            event.depth = correlationVector.depth();
+            event.length = correlationVector.length();
+            event.correlationVector = correlationVector.getValue();
+            event.commit();
+        }
+    }
+
+    /**
+     * Instances used to check whether each event is enabled, created once the
+     * Flight Recorder is initialized.
+     */
+    private static final class Probes {
+
+        static final ExtendEvent EXTEND = new ExtendEvent();
+        static final SpinEvent SPIN = new SpinEvent();
+        static final BaseGenerationEvent BASE_GENERATION = new BaseGenerationEvent();
+        static final TerminateEvent TERMINATE = new TerminateEvent();
+    }
+
+    /**
+     * Event describing the vector produced by an operation.
+     */
+    @Category("Correlation Vector")
+    abstract static class VectorEvent extends Event {
+
+        @Label("Version")
+        String version;
+
+        @Label("Depth")
+        @Description("Number of elements following the base")
+        int depth;
+
+        @Label("Length")
+        @Description("Number of characters of the correlation vector")
+        int length;
+
+        @Label("Correlation Vector")
+        String correlationVector;
+    }
+
+    @Name("com.microsoft.correlationvector.Extend")
+    @Label("Correlation Vector Extend")
+    @Threshold("100 us")
+    @StackTrace(false)
+    static final class ExtendEvent extends VectorEvent {
+    }
+
+    @Name("com.microsoft.correlationvector.Spin")
+    @Label("Correlation Vector Spin")
+    @Threshold("100 us")
+    @StackTrace(false)
+    static final class SpinEvent extends VectorEvent {
+    }
+
+    @Name("com.microsoft.correlationvector.Terminate")
+    @Label("Correlation Vector Terminate")
+    @Description("A correlation vector was terminated because it would have become oversized")
+    static final class TerminateEvent extends VectorEvent {
+    }
+
+    @Name("com.microsoft.correlationvector.BaseGeneration")
+    @Label("Correlation Vector Base Generation")
+    @Category("Correlation Vector")
+    @Threshold("100 us")
+    static final class BaseGenerationEvent extends Event {
+
+        @Label("Version")
+        String version;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Reads words from byte arrays through a byte array view {@link VarHandle}.
+ */
+final class ByteArrays {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private ByteArrays() {
+    }
+
+    static long getLongLittleEndian(byte[] bytes, int index) {
+        return (long) LONGS.get(bytes, index);
+    }
+}
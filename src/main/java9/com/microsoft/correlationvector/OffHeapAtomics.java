@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Atomic access to the ints of a buffer in native byte order, through a byte
+ * buffer view {@link VarHandle}. The ints must be aligned on four bytes and the
+ * buffer must be direct.
+ */
+final class OffHeapAtomics {
+
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+            ByteOrder.nativeOrder());
+
+    private OffHeapAtomics() {
+    }
+
+    static int getIntVolatile(ByteBuffer buffer, int index) {
+        return (int) INTS.getVolatile(buffer, index);
+    }
+
+    static void setIntVolatile(ByteBuffer buffer, int index, int value) {
+        INTS.setVolatile(buffer, index, value);
+    }
+
+    static boolean compareAndSetInt(ByteBuffer buffer, int index, int expect, int update) {
+        return INTS.compareAndSet(buffer, index, expect, update);
+    }
+}
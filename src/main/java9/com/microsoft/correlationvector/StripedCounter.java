@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ */
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter that spreads concurrent updates over cells, so threads updating it do
+ * not contend on a single value. Backed by LongAdder, which only allocates
+ * cells once updates contend.
+ */
+final class StripedCounter {
+
+    private final LongAdder adder = new LongAdder();
+
+    /**
+     * Adds one to the counter.
+     */
+    void increment() {
+        this.adder.increment();
+    }
+
+    /**
+     * Adds the given value to the counter.
+     *
+     * @param value
+     *            the value to add.
+     */
+    void add(long value) {
+        this.adder.add(value);
+    }
+
+    /**
+     * Gets the sum of the counter. The sum is not an atomic snapshot when the
+     * counter is updated concurrently.
+     *
+     * @return the sum.
+     */
+    long sum() {
+        return this.adder.sum();
+    }
+}
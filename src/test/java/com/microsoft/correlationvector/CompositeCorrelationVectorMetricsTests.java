@@ -0,0 +1,31 @@
+package com.microsoft.correlationvector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompositeCorrelationVectorMetricsTests {
+
+    @Test
+    public void everySinkIsNotified() {
+        final StripedCorrelationVectorMetrics first = new StripedCorrelationVectorMetrics();
+        final StripedCorrelationVectorMetrics second = new StripedCorrelationVectorMetrics();
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+                .metrics(new CompositeCorrelationVectorMetrics(first, second)).build();
+
+        final CorrelationVector cV = factory.extend("tul4NUsfs9Cl7mOf.1");
+        cV.increment();
+        factory.parse("invalid");
+
+        for (final StripedCorrelationVectorMetrics metrics : new StripedCorrelationVectorMetrics[] { first, second }) {
+            final CorrelationVectorMetricsSnapshot snapshot = metrics.snapshot();
+            Assert.assertEquals(1, snapshot.getExtendCount());
+            Assert.assertEquals(1, snapshot.getIncrementCount());
+            Assert.assertEquals(1, snapshot.getParseFailureCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullSinksAreRejected() {
+        new CompositeCorrelationVectorMetrics(CorrelationVectorMetrics.NONE, null);
+    }
+}
@@ -0,0 +1,68 @@
+package com.microsoft.correlationvector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CorrelatedExecutorServiceTests {
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        this.executor = new CorrelatedExecutorService(Executors.newFixedThreadPool(4));
+    }
+
+    @After
+    public void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void tasksRunWithIncrementedChildrenOfTheSubmittingVector() throws Exception {
+        final CorrelationVector parent = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        final List<Future<String>> futures = new ArrayList<>();
+
+        final long token = CorrelationContext.attach(parent);
+        try {
+            for (int i = 0; i < 10; i++) {
+                futures.add(this.executor.submit(new CurrentValue()));
+            }
+        } finally {
+            CorrelationContext.detach(token);
+        }
+
+        final HashSet<String> values = new HashSet<>();
+        for (final Future<String> future : futures) {
+            values.add(future.get());
+        }
+
+        Assert.assertEquals(10, values.size());
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertTrue(values.contains("tul4NUsfs9Cl7mOf.1." + i + ".0"));
+        }
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.10", parent.getValue());
+    }
+
+    @Test
+    public void tasksSubmittedWithoutVectorRunWithoutVector() throws Exception {
+        Assert.assertNull(this.executor.submit(new CurrentValue()).get());
+    }
+
+    private static final class CurrentValue implements Callable<String> {
+        @Override
+        public String call() {
+            final CorrelationVector current = CorrelationContext.current();
+            return current == null ? null : current.getValue();
+        }
+    }
+}
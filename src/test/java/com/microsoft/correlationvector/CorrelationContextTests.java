@@ -0,0 +1,110 @@
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationContextTests {
+
+    @Test
+    public void attachAndDetachRestoreThePreviousVector() {
+        final CorrelationVector outer = new CorrelationVector();
+        final CorrelationVector inner = CorrelationVector.extend(outer.getValue());
+
+        Assert.assertNull(CorrelationContext.current());
+        final long outerToken = CorrelationContext.attach(outer);
+        final long innerToken = CorrelationContext.attach(inner);
+        Assert.assertSame(inner, CorrelationContext.current());
+
+        CorrelationContext.detach(innerToken);
+        Assert.assertSame(outer, CorrelationContext.current());
+        CorrelationContext.detach(outerToken);
+        Assert.assertNull(CorrelationContext.current());
+    }
+
+    @Test
+    public void withExtendedRunsTaskWithExtendedVector() {
+        final AtomicReference<String> seen = new AtomicReference<>();
+        CorrelationContext.withExtended("tul4NUsfs9Cl7mOf.1", new Runnable() {
+            @Override
+            public void run() {
+                seen.set(CorrelationContext.current().getValue());
+            }
+        });
+
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.0", seen.get());
+        Assert.assertNull(CorrelationContext.current());
+    }
+
+    @Test
+    public void withExtendedCreatesVectorForMissingHeader() {
+        final AtomicReference<CorrelationVector> seen = new AtomicReference<>();
+        CorrelationContext.withExtended(null, new Runnable() {
+            @Override
+            public void run() {
+                seen.set(CorrelationContext.current());
+            }
+        });
+
+        Assert.assertEquals(16, seen.get().getBaseVector().length());
+    }
+
+    @Test
+    public void detachingOutOfOrderDiscardsInnerScopes() {
+        final long outerToken = CorrelationContext.attach(new CorrelationVector());
+        CorrelationContext.attach(new CorrelationVector());
+
+        try {
+            CorrelationContext.detach(outerToken);
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertNull(CorrelationContext.current());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void detachingTwiceThrows() {
+        final long token = CorrelationContext.attach(new CorrelationVector());
+        CorrelationContext.detach(token);
+        CorrelationContext.detach(token);
+    }
+
+    @Test
+    public void staleTokenDoesNotDetachLaterScopeAtSameDepth() {
+        final long stale = CorrelationContext.attach(new CorrelationVector());
+        CorrelationContext.detach(stale);
+        final CorrelationVector current = new CorrelationVector();
+        final long token = CorrelationContext.attach(current);
+
+        try {
+            CorrelationContext.detach(stale);
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(current, CorrelationContext.current());
+        }
+        CorrelationContext.detach(token);
+        Assert.assertNull(CorrelationContext.current());
+    }
+
+    @Test
+    public void detachFailureDoesNotReplaceTaskFailure() {
+        final IllegalArgumentException failure = new IllegalArgumentException();
+        try {
+            CorrelationContext.with(new CorrelationVector(), new Runnable() {
+                @Override
+                public void run() {
+                    // Leaves a scope attached, so detaching the task scope fails.
+                    CorrelationContext.attach(new CorrelationVector());
+                    throw failure;
+                }
+            });
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertSame(failure, e);
+            Assert.assertEquals(1, e.getSuppressed().length);
+            Assert.assertTrue(e.getSuppressed()[0] instanceof IllegalStateException);
+        }
+        Assert.assertNull(CorrelationContext.current());
+    }
+}
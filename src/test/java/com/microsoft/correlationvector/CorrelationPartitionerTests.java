@@ -0,0 +1,45 @@
+package com.microsoft.correlationvector;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationPartitionerTests {
+
+    @Test
+    public void allFormsOfAVectorHaveTheSamePartition() {
+        final CorrelationPartitioner partitioner = CorrelationPartitioner.ofPartitions(64);
+        final CorrelationVector cV = CorrelationVector.extend("KZY+dsX2jEaZesgCPjJ2Ng.1.2");
+        final byte[] header = "MS-CV: KZY+dsX2jEaZesgCPjJ2Ng.1.2.0".getBytes(Charset.forName("US-ASCII"));
+
+        final int partition = partitioner.partition(cV);
+        Assert.assertEquals(partition, partitioner.partition("KZY+dsX2jEaZesgCPjJ2Ng"));
+        Assert.assertEquals(partition, partitioner.partition(cV.increment()));
+        Assert.assertEquals(partition, partitioner.partition(header, 7, header.length - 7));
+        Assert.assertEquals(CorrelationPartitioner.partition(-3699066533489504954L, 64), partition);
+    }
+
+    @Test
+    public void growingMovesFewBasesAndOnlyToTheNewPartition() {
+        final CorrelationPartitioner before = CorrelationPartitioner.ofPartitions(10);
+        final CorrelationPartitioner after = before.withPartitions(11);
+        final int count = 110000;
+        final int[] loads = new int[11];
+        int moved = 0;
+        for (int i = 0; i < count; i++) {
+            final String base = new CorrelationVector().getBaseVector();
+            final int partition = after.partition(base);
+            loads[partition]++;
+            if (partition != before.partition(base)) {
+                Assert.assertEquals(10, partition);
+                moved++;
+            }
+        }
+
+        Assert.assertTrue("Moved: " + moved, moved < count / 10);
+        for (final int load : loads) {
+            Assert.assertTrue("Load: " + load, Math.abs(load - count / 11) < count / 100);
+        }
+    }
+}
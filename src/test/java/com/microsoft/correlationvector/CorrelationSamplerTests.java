@@ -0,0 +1,45 @@
+package com.microsoft.correlationvector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationSamplerTests {
+
+    @Test
+    public void hashDependsOnlyOnFirstElement() {
+        final CorrelationVector cv = CorrelationVector.extend("KZY+dsX2jEaZesgCPjJ2Ng.1");
+        final long hash = CorrelationSampler.hash("KZY+dsX2jEaZesgCPjJ2Ng");
+
+        // The hash is part of the contract between services and must never change
+        Assert.assertEquals(-3699066533489504954L, hash);
+        Assert.assertEquals(hash, CorrelationSampler.hash(cv));
+        Assert.assertEquals(hash, CorrelationSampler.hash(CorrelationVector.spin(cv.getValue())));
+        Assert.assertEquals(hash, CorrelationSampler.hash(new StringBuilder("KZY+dsX2jEaZesgCPjJ2Ng.1.2!")));
+        Assert.assertNotEquals(hash, CorrelationSampler.hash("KZY+dsX2jEaZesgCPjJ2Nh"));
+    }
+
+    @Test
+    public void tiersAreNestedAndMatchRates() {
+        final CorrelationSampler sampler = CorrelationSampler.ofTiers(0.01, 0.1, 0.5);
+        final int vectors = 100000;
+        final int[] tiers = new int[sampler.getTierCount() + 1];
+
+        for (int i = 0; i < vectors; i++) {
+            final CorrelationVector cv = new CorrelationVector(CorrelationVectorVersion.V1);
+            final int tier = sampler.getTier(cv);
+            tiers[tier]++;
+            Assert.assertEquals(tier < sampler.getTierCount(), sampler.isSampled(cv.getValue()));
+            Assert.assertEquals(tier == 0, CorrelationSampler.ofRate(0.01).isSampled(cv));
+        }
+
+        Assert.assertEquals(0.01, tiers[0] / (double) vectors, 0.002);
+        Assert.assertEquals(0.09, tiers[1] / (double) vectors, 0.005);
+        Assert.assertEquals(0.4, tiers[2] / (double) vectors, 0.01);
+        Assert.assertEquals(0.5, tiers[3] / (double) vectors, 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwWithUnorderedRates() {
+        CorrelationSampler.ofTiers(0.5, 0.1);
+    }
+}
@@ -0,0 +1,67 @@
+package com.microsoft.correlationvector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationTimerTests {
+
+    @Test
+    public void callsAreTimedByChildVector() throws InterruptedException {
+        final CorrelationTimer timer = CorrelationTimer.builder().capacity(16).build();
+        final CorrelationTimer.CallSite inventory = timer.callSite("inventory");
+        final CorrelationTimer.CallSite payment = timer.callSite("payment");
+        Assert.assertSame(inventory, timer.callSite("inventory"));
+
+        final CorrelationVector cV = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        final String first = timer.start(inventory, cV);
+        final String second = timer.start(payment, cV);
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1", first);
+        Thread.sleep(2);
+
+        Assert.assertTrue(timer.stop(second));
+        Assert.assertFalse(timer.stop(second));
+        Assert.assertFalse(timer.stop("tul4NUsfs9Cl7mOf.1.3"));
+
+        final CorrelationTimerSnapshot snapshot = timer.snapshot();
+        Assert.assertEquals(0, snapshot.getCount("inventory"));
+        Assert.assertEquals(1, snapshot.getCount("payment"));
+        Assert.assertTrue(snapshot.getValueAtFraction("payment", 1) >= TimeUnit.MILLISECONDS.toNanos(2));
+        Assert.assertTrue(timer.stop(first));
+    }
+
+    @Test
+    public void callsOfTerminatedVectorsAreDropped() {
+        final CorrelationTimer timer = CorrelationTimer.builder().capacity(16).build();
+        final CorrelationTimer.CallSite inventory = timer.callSite("inventory");
+        final CorrelationVector cV = CorrelationVector
+                .extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23");
+
+        final String first = timer.start(inventory, cV);
+        Assert.assertEquals(first, timer.start(inventory, cV));
+        Assert.assertTrue(first.endsWith("!"));
+        Assert.assertFalse(timer.stop(first));
+
+        timer.start(inventory, "tul4NUsfs9Cl7mOf.1.1");
+        timer.start(inventory, "tul4NUsfs9Cl7mOf.1.1");
+        Assert.assertTrue(timer.stop("tul4NUsfs9Cl7mOf.1.1"));
+        Assert.assertFalse(timer.stop("tul4NUsfs9Cl7mOf.1.1"));
+
+        final CorrelationTimerSnapshot snapshot = timer.snapshot();
+        Assert.assertEquals(3, snapshot.getDroppedCount());
+        Assert.assertEquals(1, snapshot.getCount("inventory"));
+    }
+
+    @Test
+    public void durationsAreBucketedLogLinearly() {
+        for (long nanos = 0; nanos < 1L << 41; nanos = nanos * 3 / 2 + 1) {
+            final int bucket = StripedLatencyHistogram.bucket(nanos);
+            Assert.assertTrue(StripedLatencyHistogram.lowerBound(bucket) <= nanos);
+            if (bucket < StripedLatencyHistogram.BUCKETS - 1) {
+                Assert.assertTrue(nanos < StripedLatencyHistogram.lowerBound(bucket + 1));
+                Assert.assertTrue(nanos - StripedLatencyHistogram.lowerBound(bucket) <= nanos / 8);
+            }
+        }
+    }
+}
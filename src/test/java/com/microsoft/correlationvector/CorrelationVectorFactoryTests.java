@@ -0,0 +1,235 @@
+package com.microsoft.correlationvector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationVectorFactoryTests {
+
+    @Test
+    public void createUsesConfiguredVersionAndBaseGenerator() {
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+                .version(CorrelationVectorVersion.V2).baseGenerator(new BaseVectorGenerator() {
+                    @Override
+                    public String generateBase(CorrelationVectorVersion version) {
+                        return "KZY+dsX2jEaZesgCPjJ2Ng";
+                    }
+                }).build();
+
+        final CorrelationVector cV = factory.create();
+        Assert.assertEquals(CorrelationVectorVersion.V2, cV.getVersion());
+        Assert.assertEquals("KZY+dsX2jEaZesgCPjJ2Ng.0", cV.getValue());
+        Assert.assertEquals("KZY+dsX2jEaZesgCPjJ2Ng.1", cV.increment());
+    }
+
+    @Test
+    public void fastStartBaseGeneratorCreatesUniqueBases() {
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+                .baseGenerator(new FastStartBaseVectorGenerator()).build();
+
+        final HashSet<String> bases = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final CorrelationVector v1 = factory.create(CorrelationVectorVersion.V1);
+            final CorrelationVector v2 = factory.create(CorrelationVectorVersion.V2);
+            Assert.assertEquals(16, v1.getBaseVector().length());
+            Assert.assertEquals(22, v2.getBaseVector().length());
+            bases.add(v1.getBaseVector());
+            bases.add(v2.getBaseVector());
+        }
+        Assert.assertEquals(2000, bases.size());
+    }
+
+    @Test
+    public void spinUsesConfiguredEntropyAndTickSources() {
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder().entropySource(new EntropySource() {
+            @Override
+            public void nextBytes(byte[] bytes) {
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = 1;
+                }
+            }
+        }).tickSource(new TickSource() {
+            @Override
+            public long getTicksSinceEpoch() {
+                return 3L << 24;
+            }
+        }).build();
+
+        // Coarse interval drops 24 bits of ticks, leaving 3, followed by two bytes of
+        // entropy: (3 << 16) | 0x0101, masked to 32 bits.
+        final CorrelationVector cV = factory.spin("tul4NUsfs9Cl7mOf.1");
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1." + ((3 << 16) | 0x0101) + ".0", cV.getValue());
+    }
+
+    @Test
+    public void resetReplacesOversizedVectors() {
+        final List<String> resets = new ArrayList<>();
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder().entropySource(new EntropySource() {
+            @Override
+            public void nextBytes(byte[] bytes) {
+                Arrays.fill(bytes, (byte) 1);
+            }
+        }).tickSource(new TickSource() {
+            @Override
+            public long getTicksSinceEpoch() {
+                return 3L << 24;
+            }
+        }).resetSink(new CorrelationVectorResetSink() {
+            @Override
+            public void onReset(String previousBase, String resetBase) {
+                resets.add(previousBase + " -> " + resetBase);
+            }
+        }).build();
+        final String reset = "tul4NUsfs9Cl7mOf." + ((3 << 16) | 0x0101);
+        final String oversized = "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23";
+
+        Assert.assertEquals(reset + ".0", factory.extend(oversized).getValue());
+        Assert.assertEquals(reset + ".0", factory.spin(oversized).getValue());
+
+        final CorrelationVector cV = factory.extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479");
+        for (int i = 1; i < 10; ++i) {
+            cV.increment();
+        }
+        Assert.assertEquals(reset + ".1", cV.increment());
+        Assert.assertEquals(reset + ".2", cV.increment());
+
+        final MutableCorrelationVector mutable = new MutableCorrelationVector(factory).extend(oversized);
+        Assert.assertEquals(reset + ".0", mutable.getValue());
+
+        Assert.assertEquals(Arrays.asList(oversized + " -> " + reset,
+                oversized + "." + ((3 << 16) | 0x0101) + " -> " + reset,
+                "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479 -> " + reset,
+                oversized + " -> " + reset), resets);
+    }
+
+    @Test
+    public void metricsAreNotifiedOfResetExtendsAndSpins() {
+        final AtomicInteger extensions = new AtomicInteger();
+        final AtomicInteger spins = new AtomicInteger();
+        final AtomicInteger terminations = new AtomicInteger();
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+                .metrics(new CountingMetrics(new AtomicInteger(), new AtomicInteger(), new AtomicInteger(),
+                        terminations, extensions, spins))
+                .resetSink(new CorrelationVectorResetSink() {
+                    @Override
+                    public void onReset(String previousBase, String resetBase) {
+                    }
+                }).build();
+        final String oversized = "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23";
+
+        factory.extend("tul4NUsfs9Cl7mOf.1");
+        factory.extend(oversized);
+        factory.spin("tul4NUsfs9Cl7mOf.1");
+        factory.spin(oversized);
+
+        Assert.assertEquals(2, extensions.get());
+        Assert.assertEquals(2, spins.get());
+        Assert.assertEquals(0, terminations.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validatingFactoryRejectsInvalidVector() {
+        CorrelationVectorFactory.builder().validateDuringCreation(true).build().extend("tul4NUsfs9Cl7mO.1");
+    }
+
+    @Test
+    public void nonValidatingFactoryIgnoresGlobalFlag() {
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder().build();
+        Assert.assertEquals("tul4NUsfs9Cl7mO.1.0", factory.extend("tul4NUsfs9Cl7mO.1").getValue());
+    }
+
+    @Test
+    public void internBaseVectorsSharesBaseStrings() {
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder().internBaseVectors(true).build();
+        final CorrelationVector cV1 = factory.parse(new String("tul4NUsfs9Cl7mOf.1"));
+        final CorrelationVector cV2 = factory.parse(new String("tul4NUsfs9Cl7mOf.2"));
+        Assert.assertSame(cV1.getBaseVector(), cV2.getBaseVector());
+    }
+
+    @Test
+    public void metricsAreNotifiedOfOperations() {
+        final AtomicInteger parses = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger increments = new AtomicInteger();
+        final AtomicInteger terminations = new AtomicInteger();
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+                .metrics(new CountingMetrics(parses, failures, increments, terminations)).build();
+
+        factory.parse("tul4NUsfs9Cl7mOf.1");
+        factory.parse("not a vector");
+        final CorrelationVector cV = factory.extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479");
+        for (int i = 0; i < 20; ++i) {
+            cV.increment();
+        }
+
+        Assert.assertEquals(1, parses.get());
+        Assert.assertEquals(1, failures.get());
+        Assert.assertEquals(9, increments.get());
+        Assert.assertEquals(1, terminations.get());
+    }
+
+    private static final class CountingMetrics implements CorrelationVectorMetrics {
+
+        private final AtomicInteger parses;
+        private final AtomicInteger failures;
+        private final AtomicInteger increments;
+        private final AtomicInteger terminations;
+        private final AtomicInteger extensions;
+        private final AtomicInteger spins;
+
+        CountingMetrics(AtomicInteger parses, AtomicInteger failures, AtomicInteger increments,
+                AtomicInteger terminations) {
+            this(parses, failures, increments, terminations, new AtomicInteger(), new AtomicInteger());
+        }
+
+        CountingMetrics(AtomicInteger parses, AtomicInteger failures, AtomicInteger increments,
+                AtomicInteger terminations, AtomicInteger extensions, AtomicInteger spins) {
+            this.parses = parses;
+            this.failures = failures;
+            this.increments = increments;
+            this.terminations = terminations;
+            this.extensions = extensions;
+            this.spins = spins;
+        }
+
+        @Override
+        public void onBaseGenerated(CorrelationVectorVersion version) {
+        }
+
+        @Override
+        public void onParse(CorrelationVector correlationVector) {
+            this.parses.incrementAndGet();
+        }
+
+        @Override
+        public void onParseFailure(String correlationVector) {
+            this.failures.incrementAndGet();
+        }
+
+        @Override
+        public void onExtend(CorrelationVector correlationVector) {
+            this.extensions.incrementAndGet();
+        }
+
+        @Override
+        public void onSpin(CorrelationVector correlationVector) {
+            this.spins.incrementAndGet();
+        }
+
+        @Override
+        public void onIncrement(CorrelationVector correlationVector, String value) {
+            Assert.assertTrue(value, value.startsWith(correlationVector.getBaseVector() + "."));
+            this.increments.incrementAndGet();
+        }
+
+        @Override
+        public void onTerminate(CorrelationVector correlationVector) {
+            this.terminations.incrementAndGet();
+        }
+    }
+}
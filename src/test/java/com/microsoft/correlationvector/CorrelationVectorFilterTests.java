@@ -0,0 +1,59 @@
+package com.microsoft.correlationvector;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationVectorFilterTests {
+
+    @Test
+    public void stringBytesAndVectorFormsAreTheSameVector() {
+        final CorrelationVectorFilter filter = CorrelationVectorFilter.builder().expectedInsertions(1000).build();
+        final CorrelationVector cV = CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        cV.increment();
+
+        Assert.assertTrue(filter.add(cV));
+        Assert.assertFalse(filter.add("tul4NUsfs9Cl7mOf.1.1"));
+        final byte[] header = "MS-CV: tul4NUsfs9Cl7mOf.1.1".getBytes(Charset.forName("US-ASCII"));
+        Assert.assertTrue(filter.mightContain(header, 7, header.length - 7));
+
+        Assert.assertFalse(filter.mightContain("tul4NUsfs9Cl7mOf.1.0"));
+        Assert.assertFalse(filter.mightContain("tul4NUsfs9Cl7mOf.1.1!"));
+        Assert.assertFalse(filter.mightContain("tul4NUsfs9Cl7mOf.11"));
+    }
+
+    @Test
+    public void vectorsAreForgottenAfterAllGenerationsRotate() {
+        final CorrelationVectorFilter filter = CorrelationVectorFilter.builder().expectedInsertions(1000)
+                .generations(3).build();
+        filter.add("tul4NUsfs9Cl7mOf.1");
+        filter.rotate();
+        filter.rotate();
+        Assert.assertTrue(filter.mightContain("tul4NUsfs9Cl7mOf.1"));
+        filter.rotate();
+        Assert.assertFalse(filter.mightContain("tul4NUsfs9Cl7mOf.1"));
+    }
+
+    @Test
+    public void falsePositiveRateIsWithinConfiguration() {
+        final int count = 100000;
+        final CorrelationVectorFilter filter = CorrelationVectorFilter.builder().expectedInsertions(count)
+                .falsePositiveRate(0.01).build();
+        final CorrelationVector cV = new CorrelationVector();
+        for (int generation = 0; generation < 2; generation++) {
+            filter.rotate();
+            for (int i = 0; i < count; i++) {
+                filter.add(cV.increment());
+            }
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.mightContain(cV.increment())) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("False positives: " + falsePositives, falsePositives < count / 100);
+    }
+}
@@ -0,0 +1,63 @@
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class CorrelationVectorHttpFilterTests {
+
+    @Test
+    public void requestVectorsAreExtendedAndCurrent() throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final CorrelationVector current = CorrelationContext.current();
+                Assert.assertSame(current, CorrelationVectorHttpFilter.get(exchange));
+                final byte[] body = current.increment().getBytes(StandardCharsets.US_ASCII);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        }).getFilters().add(new CorrelationVectorHttpFilter());
+        server.start();
+        try {
+            final URL url = new URL("http", "localhost", server.getAddress().getPort(), "/");
+            Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1", get(url, "tul4NUsfs9Cl7mOf.1"));
+            Assert.assertEquals("tul4NUsfs9Cl7mOf.1!", get(url, "tul4NUsfs9Cl7mOf.1!"));
+
+            final String created = get(url, null);
+            Assert.assertEquals(CorrelationVectorVersion.V1, CorrelationVector.parse(created).getVersion());
+            Assert.assertTrue(created.endsWith(".1"));
+        } finally {
+            server.stop(0);
+        }
+        Assert.assertNull(CorrelationContext.current());
+    }
+
+    private static String get(URL url, String header) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (header != null) {
+            connection.setRequestProperty(CorrelationVector.HEADER_NAME, header);
+        }
+        try (InputStream body = connection.getInputStream()) {
+            final byte[] buffer = new byte[128];
+            int length = 0;
+            for (int read; (read = body.read(buffer, length, buffer.length - length)) > 0;) {
+                length += read;
+            }
+            return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
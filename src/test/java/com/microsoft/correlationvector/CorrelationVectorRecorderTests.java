@@ -0,0 +1,118 @@
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorrelationVectorRecorderTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordedOperationsAreReadBack() throws IOException {
+        final Path directory = this.folder.getRoot().toPath();
+        final CorrelationVectorRecorder recorder = CorrelationVectorRecorder.builder(directory)
+                .flushInterval(1, TimeUnit.MILLISECONDS).build();
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder().metrics(recorder).build();
+
+        final CorrelationVector cV = factory.extend("tul4NUsfs9Cl7mOf.1");
+        cV.increment();
+        factory.extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23");
+        recorder.close();
+
+        final List<CorrelationVectorRecord> records = readAll(directory, "correlation-vectors");
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(CorrelationVectorOperation.Extend, records.get(0).getOperation());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.0", records.get(0).getValue());
+        Assert.assertEquals(CorrelationVectorOperation.Increment, records.get(1).getOperation());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1", records.get(1).getValue());
+        Assert.assertEquals(CorrelationVectorOperation.Terminate, records.get(2).getOperation());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23!",
+                records.get(2).getValue());
+        Assert.assertFalse(records.get(2).isTruncated());
+        Assert.assertEquals(0, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void incrementsAreRecordedWithTheValuesTheyProduced() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final CorrelationVectorRecorder recorder = CorrelationVectorRecorder.builder(directory).capacity(4096)
+                .flushInterval(1, TimeUnit.MILLISECONDS).build();
+        final CorrelationVector cV = CorrelationVectorFactory.builder().metrics(recorder).build()
+                .extend("tul4NUsfs9Cl7mOf.1");
+
+        final ConcurrentLinkedQueue<String> values = new ConcurrentLinkedQueue<>();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        values.add(cV.increment());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        recorder.close();
+
+        final Set<String> recorded = new HashSet<>();
+        for (final CorrelationVectorRecord record : readAll(directory, "correlation-vectors")) {
+            if (record.getOperation() == CorrelationVectorOperation.Increment) {
+                recorded.add(record.getValue());
+            }
+        }
+        Assert.assertEquals(2000, recorded.size());
+        Assert.assertEquals(new HashSet<>(values), recorded);
+    }
+
+    @Test
+    public void filesRollAndOldFilesAreDeleted() throws Exception {
+        final Path directory = this.folder.getRoot().toPath();
+        final CorrelationVectorRecorder recorder = CorrelationVectorRecorder.builder(directory).filePrefix("roll")
+                .capacity(4).maxFileBytes(8 + 2 * 144).maxFiles(2).flushInterval(1, TimeUnit.MILLISECONDS).build();
+
+        final CorrelationVector cV = new CorrelationVector();
+        for (int i = 0; i < 20; i++) {
+            recorder.record(CorrelationVectorOperation.Increment, cV);
+            Thread.sleep(2);
+        }
+        recorder.close();
+
+        final List<Path> files = CorrelationVectorRecorder.listFiles(directory, "roll");
+        Assert.assertEquals(2, files.size());
+
+        final List<CorrelationVectorRecord> records = readAll(directory, "roll");
+        Assert.assertTrue(records.size() <= 4);
+        for (final CorrelationVectorRecord record : records) {
+            Assert.assertEquals(cV.getValue(), record.getValue());
+        }
+    }
+
+    private static List<CorrelationVectorRecord> readAll(Path directory, String prefix) throws IOException {
+        final List<CorrelationVectorRecord> records = new ArrayList<>();
+        for (final Path file : CorrelationVectorRecorder.listFiles(directory, prefix)) {
+            try (CorrelationVectorRecordReader reader = new CorrelationVectorRecordReader(file)) {
+                CorrelationVectorRecord record;
+                while ((record = reader.read()) != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+}
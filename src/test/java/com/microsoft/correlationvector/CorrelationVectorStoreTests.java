@@ -0,0 +1,184 @@
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CorrelationVectorStoreTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedVectorsContinueAfterReopening() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("vectors.cvs");
+
+        CorrelationVectorStore store = CorrelationVectorStore.builder(file).capacity(4).build();
+        CorrelationVector cV = store.put("order-42", CorrelationVector.extend("tul4NUsfs9Cl7mOf.1"));
+        cV.increment();
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2", cV.increment());
+        store.getOrCreate("order-43");
+        store.close();
+
+        store = CorrelationVectorStore.builder(file).build();
+        Assert.assertEquals(4, store.getCapacity());
+        Assert.assertEquals(2, store.size());
+        cV = store.get("order-42");
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2", cV.getValue());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.3", cV.increment());
+
+        Assert.assertTrue(store.remove("order-42"));
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.4", cV.increment());
+        store.close();
+
+        store = CorrelationVectorStore.builder(file).build();
+        Assert.assertNull(store.get("order-42"));
+        Assert.assertNotNull(store.get("order-43"));
+        store.close();
+    }
+
+    @Test
+    public void fullStoreRejectsNewVectors() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("full.cvs");
+        final CorrelationVectorStore store = CorrelationVectorStore.builder(file).capacity(1).build();
+        store.getOrCreate("a");
+        try {
+            store.getOrCreate("b");
+            Assert.fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected.
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void openStoreCanNotBeOpenedAgain() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("locked.cvs");
+        final CorrelationVectorStore store = CorrelationVectorStore.builder(file).build();
+        try {
+            CorrelationVectorStore.builder(file).build();
+            Assert.fail("Expected an IOException");
+        } catch (IOException e) {
+            // Expected.
+        } finally {
+            store.close();
+        }
+        CorrelationVectorStore.builder(file).build().close();
+    }
+
+    @Test
+    public void partiallyWrittenSlotsAreFreed() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("partial.cvs");
+        CorrelationVectorStore store = CorrelationVectorStore.builder(file).capacity(2).build();
+        store.put("a", CorrelationVector.extend("tul4NUsfs9Cl7mOf.1"));
+        store.put("b", CorrelationVector.extend("tul4NUsfs9Cl7mOf.2"));
+        store.close();
+        // A crash of the machine that wrote the flags of the slot but not its base.
+        write(file, 1, CorrelationVectorStore.BASE_LENGTH_OFFSET, (byte) 0);
+
+        store = CorrelationVectorStore.builder(file).build();
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.0", store.get("a").getValue());
+        Assert.assertNull(store.get("b"));
+        store.getOrCreate("c");
+        Assert.assertEquals(2, store.size());
+        store.close();
+    }
+
+    @Test
+    public void duplicateNamesKeepTheFirstSlot() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("duplicate.cvs");
+        CorrelationVectorStore store = CorrelationVectorStore.builder(file).capacity(2).build();
+        store.put("a", CorrelationVector.extend("tul4NUsfs9Cl7mOf.1"));
+        store.put("b", CorrelationVector.extend("tul4NUsfs9Cl7mOf.2"));
+        store.close();
+        write(file, 1, CorrelationVectorStore.NAME_OFFSET, (byte) 'a');
+
+        store = CorrelationVectorStore.builder(file).build();
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.0", store.get("a").getValue());
+        store.getOrCreate("c");
+        Assert.assertEquals(2, store.size());
+        store.close();
+    }
+
+    @Test
+    public void resetVectorsAreDetachedFromTheFile() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("reset.cvs");
+        final String oversized = "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479";
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder()
+                .resetSink(new CorrelationVectorResetSink() {
+                    @Override
+                    public void onReset(String previousBase, String resetBase) {
+                    }
+                }).build();
+        CorrelationVectorStore store = CorrelationVectorStore.builder(file).factory(factory).build();
+        final CorrelationVector cV = store.put("a", factory.extend(oversized));
+        for (int i = 1; i < 10; i++) {
+            cV.increment();
+        }
+        final String reset = cV.increment();
+        Assert.assertFalse(reset, reset.startsWith(oversized));
+        cV.increment();
+        store.close();
+
+        store = CorrelationVectorStore.builder(file).factory(factory).build();
+        Assert.assertEquals(oversized + ".9", store.get("a").getValue());
+        store.close();
+    }
+
+    @Test
+    public void closingTheStoreTerminatesItsVectors() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("fenced.cvs");
+        CorrelationVectorStore store = CorrelationVectorStore.builder(file).build();
+        final CorrelationVector cV = store.put("a", CorrelationVector.extend("tul4NUsfs9Cl7mOf.1"));
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1", cV.increment());
+        store.close();
+
+        store = CorrelationVectorStore.builder(file).build();
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1!", cV.increment());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2", store.get("a").increment());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1!", cV.increment());
+        store.close();
+    }
+
+    @Test
+    public void terminatedVectorsStayTerminatedAfterReopening() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("terminated.cvs");
+        final String oversized = "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479";
+        CorrelationVectorStore store = CorrelationVectorStore.builder(file).build();
+        final CorrelationVector cV = store.put("a", CorrelationVector.extend(oversized));
+        for (int i = 1; i < 10; i++) {
+            cV.increment();
+        }
+        Assert.assertEquals(oversized + ".9!", cV.increment());
+        store.close();
+
+        store = CorrelationVectorStore.builder(file).build();
+        Assert.assertEquals(oversized + ".9!", store.get("a").getValue());
+        store.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void basesThatAreNotAsciiAreRejected() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("ascii.cvs");
+        try (CorrelationVectorStore store = CorrelationVectorStore.builder(file).build()) {
+            store.put("a", CorrelationVector.parse("tul4NUsfs9Cl7m\u4e2ef.1"));
+        }
+    }
+
+    private static void write(Path file, int slot, int offset, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { value }),
+                    CorrelationVectorStore.FILE_HEADER_SIZE + slot * CorrelationVectorStore.SLOT_SIZE + offset);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.microsoft.correlationvector;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationVectorTableTests {
+
+    @Test
+    public void storesIncrementsAndRendersVectors() {
+        final CorrelationVectorTable table = new CorrelationVectorTable(10);
+        final long v1 = table.extend("tul4NUsfs9Cl7mOf.1");
+        final long v2 = table.parse("KZY+dsX2jEaZesgCPjJ2Ng.1.23");
+        final byte[] buffer = new byte[64];
+
+        Assert.assertEquals(1, table.increment(v1));
+        final int length = table.incrementAndWriteTo(v1, buffer, 1);
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.2", new String(buffer, 1, length, StandardCharsets.US_ASCII));
+        Assert.assertEquals(CorrelationVector.parse("tul4NUsfs9Cl7mOf.1.2"), table.get(v1));
+
+        final ByteBuffer target = ByteBuffer.allocate(64);
+        table.writeTo(v2, target);
+        Assert.assertEquals("KZY+dsX2jEaZesgCPjJ2Ng.1.23",
+                new String(target.array(), 0, target.position(), StandardCharsets.US_ASCII));
+        Assert.assertEquals(CorrelationVectorVersion.V2, table.get(v2).getVersion());
+        Assert.assertEquals(2, table.size());
+    }
+
+    @Test
+    public void terminatesOversizedVectors() {
+        final CorrelationVectorTable table = new CorrelationVectorTable(1);
+        final long handle = table.extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479");
+        for (int i = 1; i < 10; i++) {
+            Assert.assertEquals(i, table.increment(handle));
+        }
+        Assert.assertEquals(-1, table.increment(handle));
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.9!",
+                table.get(handle).getValue());
+    }
+
+    @Test
+    public void replacesVectorsWithBasesThatAreNotAscii() {
+        final CorrelationVectorTable table = new CorrelationVectorTable(1);
+        final long handle = table.parse("tul4NUsfs9Cl7m\u4e2ef.12");
+
+        final CorrelationVector stored = table.get(handle);
+        Assert.assertEquals(0, table.getExtension(handle));
+        Assert.assertTrue(stored.getValue(), CorrelationVectorValidator.of(CorrelationVectorVersion.V1)
+                .isValid(stored.getValue()));
+    }
+
+    @Test
+    public void removedSlotsAreReusedWithNewHandles() {
+        final CorrelationVectorTable table = new CorrelationVectorTable(1);
+        final long removed = table.create();
+        table.remove(removed);
+        final long handle = table.create();
+
+        Assert.assertNotEquals(removed, handle);
+        Assert.assertEquals(0, table.getExtension(handle));
+        try {
+            table.increment(removed);
+            Assert.fail("removed handle was accepted");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            table.create();
+            Assert.fail("full table accepted a vector");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void incrementsRacingWithRemoveDoNotReuseSlots() throws InterruptedException {
+        final CorrelationVectorTable table = new CorrelationVectorTable(1);
+        for (int round = 0; round < 200; round++) {
+            final long handle = table.create();
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (;;) {
+                            table.increment(handle);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Removed.
+                    }
+                }
+            });
+            thread.start();
+            Thread.yield();
+            table.remove(handle);
+            thread.join();
+            Assert.assertEquals(0, table.size());
+        }
+
+        final long handle = table.create();
+        Assert.assertEquals(0, table.getExtension(handle));
+        try {
+            table.create();
+            Assert.fail("full table accepted a vector");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void incrementIsUniqueAcrossThreads() throws InterruptedException {
+        final CorrelationVectorTable table = new CorrelationVectorTable(CorrelationVectorTable.SLAB_SLOTS + 1);
+        for (int i = 0; i < CorrelationVectorTable.SLAB_SLOTS; i++) {
+            table.create();
+        }
+        final long handle = table.create();
+        final ConcurrentLinkedQueue<Integer> extensions = new ConcurrentLinkedQueue<>();
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        extensions.add(table.increment(handle));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(4000, new HashSet<>(extensions).size());
+        Assert.assertEquals(4000, table.getExtension(handle));
+    }
+}
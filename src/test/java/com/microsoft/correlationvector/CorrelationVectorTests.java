@@ -1,5 +1,7 @@
 package com.microsoft.correlationvector;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -86,6 +88,13 @@ public class CorrelationVectorTests {
         Assert.assertEquals("KZY+dsX2jEaZesgCPjJ2Ng.1.1", cV.toString());
     }
 
+    @Test
+    public void basesThatAreNotAsciiAreRenderedUnchanged() {
+        final CorrelationVector cV = CorrelationVector.extend("tul4NUsfs9Cl7m\u4e2ef.1");
+        Assert.assertEquals("tul4NUsfs9Cl7m\u4e2ef.1.0", cV.getValue());
+        Assert.assertEquals("tul4NUsfs9Cl7m\u4e2ef.1.1", cV.increment());
+    }
+
     // create, extend and increment correlation vector default
     @Test
     public void createExtendAndIncrementCorrelationVectorDefault() {
@@ -248,6 +257,42 @@ public class CorrelationVectorTests {
                 cV.getValue());
     }
 
+    // increment across the digit boundaries of the extension
+    @Test
+    public void incrementAcrossDigitBoundaries() {
+        for (int extension = 9; extension < 1000000000; extension = extension * 10 + 9) {
+            final CorrelationVector cv = CorrelationVector.parse("tul4NUsfs9Cl7mOf.1." + extension);
+            Assert.assertEquals("tul4NUsfs9Cl7mOf.1." + (extension + 1), cv.increment());
+            Assert.assertEquals("tul4NUsfs9Cl7mOf.1." + (extension + 1), cv.getValue());
+        }
+
+        // The base leaves room for a single digit
+        final CorrelationVector cv = CorrelationVector
+                .parse("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.8");
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.9", cv.increment());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.9!", cv.increment());
+    }
+
+    // render the value without creating its string
+    @Test
+    public void appendToAndCharSequenceMatchValue() throws IOException {
+        final CorrelationVector cv = CorrelationVector.parse("tul4NUsfs9Cl7mOf.1.1009");
+        final CharSequence snapshot = cv.asCharSequence();
+        cv.increment();
+
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1009", snapshot.toString());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1009", new StringBuilder().append(snapshot).toString());
+        Assert.assertEquals('9', snapshot.charAt(snapshot.length() - 1));
+        Assert.assertEquals("1.1009", snapshot.subSequence(17, 23));
+
+        Assert.assertEquals("x tul4NUsfs9Cl7mOf.1.1010", cv.appendTo(new StringBuilder("x ")).toString());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.1.1010", cv.appendTo(new StringWriter()).toString());
+
+        final CorrelationVector terminated = CorrelationVector.parse("tul4NUsfs9Cl7mOf.0!");
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.0!", terminated.appendTo(new StringWriter()).toString());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.0!", new StringBuilder().append(terminated.asCharSequence()).toString());
+    }
+
     @Test
     public void spinOverMaxCVLength() {
         final String baseVector = "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23";
@@ -0,0 +1,91 @@
+package com.microsoft.correlationvector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationVectorValidatorTests {
+
+    private static final String[] VALID = { "tul4NUsfs9Cl7mOf.1", "tul4NUsfs9Cl7mOf.1.22.333!",
+            "KZY+dsX2jEaZesgCPjJ2Ng.2147483647", "KZY/dsX2jEaZesgCPjJ2Ng.0.1.2.3.4.5.6.7.8.9.10.11.12",
+            "tul4NUsfs9Cl7mOf.1234567890.1.2147483646",
+            "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.2147483647.99!" };
+
+    private static final String[] INVALID = { "", "tul4NUsfs9Cl7mOf", "tul4NUsfs9Cl7mOf.", "tul4NUsfs9Cl7mOf.1.",
+            "tul4NUsfs9Cl7mOf..1", "tul4NUsfs9Cl7mO.1", "tul4NUsfs9Cl7mO-.1", "tul4NUsfs9Cl7mOf.1!.2",
+            "tul4NUsfs9Cl7mOf.2147483648", "tul4NUsfs9Cl7mOf.12345678901", "tul4NUsfs9Cl7mOf.-1",
+            "tul4NUsfs9Cl7mOf.1a", "tul4NUsfs9Cl7m\u00e9f.1", "tul4NUsfs9Cl7mOf.1.2.3.4.5.6.7.8.9.10.11.12.13.14.15.16.17.18.19.20",
+            "KZY+dsX2jEaZesgCPjJ2Ng.!" };
+
+    @Test
+    public void stringsAndBytesAgree() {
+        final CorrelationVectorValidator validator = CorrelationVectorValidator.anyVersion();
+        for (final String value : VALID) {
+            Assert.assertTrue(value, validator.isValid(value));
+            Assert.assertTrue(value, isValid(validator, value));
+        }
+        for (final String value : INVALID) {
+            Assert.assertFalse(value, validator.isValid(value));
+            Assert.assertFalse(value, isValid(validator, value));
+        }
+
+        Assert.assertTrue(CorrelationVectorValidator.of(CorrelationVectorVersion.V1).isValid(VALID[0]));
+        Assert.assertFalse(CorrelationVectorValidator.of(CorrelationVectorVersion.V2).isValid(VALID[0]));
+        Assert.assertFalse(CorrelationVectorValidator.of(CorrelationVectorVersion.V1).isValid(VALID[2]));
+    }
+
+    @Test
+    public void terminatedVectorsOfTheMaximumLengthAreValid() {
+        final CorrelationVector cV = CorrelationVector
+                .extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.2147483647");
+        for (int i = 0; i < 100; i++) {
+            cV.increment();
+        }
+        final String value = cV.increment();
+        Assert.assertEquals(64, value.length());
+        Assert.assertTrue(value, CorrelationVectorValidator.anyVersion().isValid(value));
+        Assert.assertTrue(value, isValid(CorrelationVectorValidator.of(CorrelationVectorVersion.V1), value));
+        Assert.assertFalse(CorrelationVectorValidator.anyVersion().isValid(value.replace('!', '0')));
+    }
+
+    @Test
+    public void columnsAreValidatedInBatches() {
+        final int count = 10000;
+        final String[] vectors = new String[count];
+        final StringBuilder column = new StringBuilder();
+        final int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = i % 3 == 0 ? INVALID[i % INVALID.length] : VALID[i % VALID.length];
+            column.append(vectors[i]);
+            offsets[i + 1] = column.length();
+        }
+        final byte[] data = column.toString().getBytes(StandardCharsets.ISO_8859_1);
+        final CorrelationVectorValidator validator = CorrelationVectorValidator.anyVersion();
+
+        final boolean[] results = new boolean[count];
+        final int valid = validator.validate(vectors, results);
+        final boolean[] parallelResults = new boolean[count];
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        Assert.assertEquals(valid, validator.validateParallel(data, offsets, parallelResults, pool));
+        Assert.assertArrayEquals(results, parallelResults);
+        Assert.assertEquals(valid, validator.validateParallel(vectors, parallelResults, pool));
+        Assert.assertArrayEquals(results, parallelResults);
+        pool.shutdown();
+
+        final BitSet bits = new BitSet();
+        Assert.assertEquals(valid, validator.validate(data, offsets, bits));
+        Assert.assertEquals(valid, bits.cardinality());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(results[i], bits.get(i));
+            Assert.assertEquals(i % 3 != 0, results[i]);
+        }
+    }
+
+    private static boolean isValid(CorrelationVectorValidator validator, String value) {
+        final byte[] bytes = ("xx" + value).getBytes(StandardCharsets.UTF_8);
+        return validator.isValid(bytes, 2, bytes.length - 2);
+    }
+}
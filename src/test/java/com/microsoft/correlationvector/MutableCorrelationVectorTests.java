@@ -0,0 +1,89 @@
+package com.microsoft.correlationvector;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MutableCorrelationVectorTests {
+
+    @Test
+    public void matchesImmutableVectorOperations() {
+        final String header = "tul4NUsfs9Cl7mOf.1";
+        final MutableCorrelationVector mutable = new MutableCorrelationVector();
+        final CorrelationVector expected = CorrelationVector.extend(header);
+
+        mutable.extend(header);
+        Assert.assertEquals(expected.getValue(), mutable.getValue());
+        Assert.assertTrue(mutable.increment());
+        Assert.assertEquals(expected.increment(), mutable.getValue());
+
+        mutable.extend();
+        final CorrelationVector child = CorrelationVector.extend(expected.getValue());
+        Assert.assertEquals(child.getValue(), mutable.getValue());
+        Assert.assertEquals(child, mutable.toCorrelationVector());
+
+        final char[] chars = new char[40];
+        final int length = mutable.writeTo(chars, 2);
+        Assert.assertEquals(child.getValue(), new String(chars, 2, length));
+        final byte[] bytes = new byte[length];
+        mutable.writeTo(bytes, 0);
+        Assert.assertEquals(child.getValue(), new String(bytes, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void resetParsesOrCreatesNewVector() {
+        final MutableCorrelationVector mutable = new MutableCorrelationVector();
+
+        Assert.assertSame(mutable, mutable.reset(new StringBuilder("KZY+dsX2jEaZesgCPjJ2Ng.1.23!")));
+        Assert.assertEquals(CorrelationVectorVersion.V2, mutable.getVersion());
+        Assert.assertTrue(mutable.isImmutable());
+        Assert.assertEquals(23, mutable.getExtension());
+        Assert.assertFalse(mutable.increment());
+        Assert.assertEquals("KZY+dsX2jEaZesgCPjJ2Ng.1.23!", mutable.getValue());
+
+        Assert.assertFalse(mutable.tryReset("tul4NUsfs9Cl7mOf.x"));
+        Assert.assertEquals("KZY+dsX2jEaZesgCPjJ2Ng.1.23!", mutable.getValue());
+        Assert.assertTrue(mutable.tryReset("tul4NUsfs9Cl7mOf.4"));
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.4", mutable.getValue());
+
+        mutable.reset("tul4NUsfs9Cl7mOf.x");
+        Assert.assertEquals(CorrelationVectorVersion.V1, mutable.getVersion());
+        Assert.assertFalse(mutable.isImmutable());
+        Assert.assertEquals(0, mutable.getExtension());
+    }
+
+    @Test
+    public void terminatesOversizedVectors() {
+        final String header = "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23";
+        final MutableCorrelationVector mutable = new MutableCorrelationVector().extend(header);
+        Assert.assertEquals(CorrelationVector.extend(header).getValue(), mutable.getValue());
+        Assert.assertTrue(mutable.isImmutable());
+
+        mutable.extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479");
+        for (int i = 1; i < 10; i++) {
+            Assert.assertTrue(mutable.increment());
+        }
+        Assert.assertFalse(mutable.increment());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.9!",
+                mutable.getValue());
+    }
+
+    @Test
+    public void resetTerminatesOversizedValuesAsParseDoes() {
+        final String[] values = { "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.230",
+                "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.10",
+                "KZY+dsX2jEaZesgCPjJ2Ng.2147483647.2147483647.2147483647.2147483647.2147483647.2147483647"
+                        + ".2147483647.2147483647.2147483647.21410",
+                "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23" };
+        final MutableCorrelationVector mutable = new MutableCorrelationVector();
+        for (final String value : values) {
+            final CorrelationVector expected = CorrelationVector.parse(value);
+            mutable.reset(value);
+            Assert.assertEquals(value, expected.getValue(), mutable.getValue());
+            Assert.assertEquals(value, expected.isImmutable(), mutable.isImmutable());
+            Assert.assertEquals(value, expected.isImmutable(), !mutable.increment());
+            Assert.assertEquals(value, expected.increment(), mutable.getValue());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.microsoft.correlationvector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedCorrelationVectorMetricsTests {
+
+    @Test
+    public void snapshotCountsOperations() {
+        final StripedCorrelationVectorMetrics metrics = new StripedCorrelationVectorMetrics();
+        final CorrelationVectorFactory factory = CorrelationVectorFactory.builder().metrics(metrics).build();
+
+        final CorrelationVector cV = factory.create();
+        factory.parse(cV.increment());
+        factory.extend("tul4NUsfs9Cl7mOf.1.2!");
+        factory.parse("invalid");
+        factory.spin("tul4NUsfs9Cl7mOf.1");
+        factory.extend("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.214748364.23");
+
+        final CorrelationVectorMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(2, snapshot.getBaseGeneratedCount());
+        Assert.assertEquals(2, snapshot.getParseCount());
+        Assert.assertEquals(1, snapshot.getReceivedTerminatedCount());
+        Assert.assertEquals(1, snapshot.getParseFailureCount());
+        Assert.assertEquals(0, snapshot.getExtendCount());
+        Assert.assertEquals(1, snapshot.getSpinCount());
+        Assert.assertEquals(1, snapshot.getIncrementCount());
+        Assert.assertEquals(1, snapshot.getTerminateCount());
+        Assert.assertEquals(Long.valueOf(1), snapshot.getCounters().get("cv.spin"));
+
+        // Parsed "<base>.1" (18 chars, depth 1), "tul4NUsfs9Cl7mOf.1.2!" (21 chars, depth 2)
+        // and spun "tul4NUsfs9Cl7mOf.1.<s>.0" (depth 3).
+        final long[] lengths = snapshot.getLengthHistogram();
+        Assert.assertEquals(1, lengths[18]);
+        Assert.assertEquals(1, lengths[21]);
+        final long[] depths = snapshot.getDepthHistogram();
+        Assert.assertEquals(1, depths[1]);
+        Assert.assertEquals(1, depths[2]);
+        Assert.assertEquals(1, depths[3]);
+    }
+
+    @Test
+    public void countersAreExactAcrossThreads() throws InterruptedException {
+        final StripedCorrelationVectorMetrics metrics = new StripedCorrelationVectorMetrics();
+        final CorrelationVector cV = CorrelationVectorFactory.builder().metrics(metrics).build().create();
+
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        cV.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(80000, metrics.snapshot().getIncrementCount());
+    }
+}
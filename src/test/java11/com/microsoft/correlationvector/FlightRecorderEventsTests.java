@@ -0,0 +1,72 @@
+package com.microsoft.correlationvector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTests {
+
+    @Test
+    public void eventsAreEmittedAndSampled() throws IOException {
+        // The failsafe plugin sets the sampling property to 2.
+        Assert.assertEquals("2", System.getProperty("com.microsoft.correlationvector.jfr.sampling"));
+
+        // The hooks do not load the Flight Recorder before a recording is started.
+        CorrelationVector.extend("tul4NUsfs9Cl7mOf.1");
+        Assert.assertFalse(FlightRecorder.isInitialized());
+
+        final Path file = Files.createTempFile("correlation-vector", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.microsoft.correlationvector.Extend").withThreshold(Duration.ZERO);
+            recording.enable("com.microsoft.correlationvector.Terminate");
+            recording.start();
+
+            for (int i = 0; i < 10; i++) {
+                CorrelationVector.extend("tul4NUsfs9Cl7mOf." + i);
+            }
+            final CorrelationVector cV = new CorrelationVector(CorrelationVectorFactory.getDefault(),
+                    "tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479", 9,
+                    CorrelationVectorVersion.V1, false);
+            cV.increment();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        final List<String> extended = new ArrayList<>();
+        final List<String> terminated = new ArrayList<>();
+        try {
+            for (final RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                final String name = event.getEventType().getName();
+                if (name.equals("com.microsoft.correlationvector.Extend")) {
+                    extended.add(event.getString("correlationVector"));
+                } else if (name.equals("com.microsoft.correlationvector.Terminate")) {
+                    terminated.add(event.getString("correlationVector"));
+                    Assert.assertEquals(5, event.getInt("depth"));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        // One extend in two is committed.
+        Assert.assertEquals(5, extended.size());
+        for (final String value : extended) {
+            Assert.assertTrue(value, value.startsWith("tul4NUsfs9Cl7mOf.") && value.endsWith(".0"));
+        }
+        // Terminate events are not sampled.
+        Assert.assertEquals(1, terminated.size());
+        Assert.assertEquals("tul4NUsfs9Cl7mOf.2147483647.2147483647.2147483647.21474836479.9!", terminated.get(0));
+    }
+}
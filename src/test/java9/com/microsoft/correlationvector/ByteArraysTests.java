@@ -0,0 +1,29 @@
+package com.microsoft.correlationvector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ByteArraysTests {
+
+    @Test
+    public void longsAreReadInLittleEndianOrderAtAnyIndex() {
+        final byte[] bytes = new byte[19];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (0x80 + i * 7);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int index = 0; index + 8 <= bytes.length; index++) {
+            Assert.assertEquals(buffer.getLong(index), ByteArrays.getLongLittleEndian(bytes, index));
+        }
+        Assert.assertEquals(0x0807060504030201L,
+                ByteArrays.getLongLittleEndian(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readsPastTheEndThrow() {
+        ByteArrays.getLongLittleEndian(new byte[8], 1);
+    }
+}
@@ -0,0 +1,17 @@
+package com.microsoft.correlationvector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionedClassesTests {
+
+    @Test
+    public void versionedClassesAreLoadedFromTheMultiReleaseJar() {
+        for (final Class<?> type : new Class<?>[] { ByteArrays.class, OffHeapAtomics.class, StripedCounter.class }) {
+            final String location = type.getResource(type.getSimpleName() + ".class").toString();
+            Assert.assertTrue(location, location.contains("!/META-INF/versions/9/"));
+        }
+        final String location = FlightRecorderEvents.class.getResource("FlightRecorderEvents.class").toString();
+        Assert.assertTrue(location, location.contains("!/META-INF/versions/11/"));
+    }
+}